@@ -0,0 +1,94 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.NoSuchElementException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// The one reader of System.in. A background thread queues each line as it is typed, so a
+// prompt can stop waiting when a TurnClock runs out without a thread stuck in a read. A
+// timeout wakes the waiting prompt by queueing a marker object that only that prompt
+// recognises; markers left over from prompts that got their line first are skipped.
+class ConsoleInput {
+	private static final Object END_OF_INPUT = new Object();
+	private static ConsoleInput instance;
+
+	private LinkedBlockingQueue<Object> lines;
+
+	private ConsoleInput() {
+		this.lines = new LinkedBlockingQueue<Object>();
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				readLines();
+			}
+		}, "console-input");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	public static synchronized ConsoleInput get() {
+		if (instance == null) {
+			instance = new ConsoleInput();
+		}
+		return instance;
+	}
+
+	private void readLines() {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				this.lines.add(line);
+			}
+		}
+		catch (IOException ex) {}
+		this.lines.add(END_OF_INPUT);
+	}
+
+	// Waits as long as it takes, like Scanner.nextLine.
+	public String nextLine() {
+		return nextLine(null);
+	}
+
+	// Returns null if the clock's budget runs out before a line is typed.
+	public String nextLine(TurnClock clock) {
+		HashedWheelTimer.Timeout timeout = null;
+		final Object marker = new Object();
+		if (clock != null) {
+			if (clock.getNextBudgetMillis() == 0) {
+				return null;
+			}
+			timeout = TurnClock.TIMER.schedule(new Runnable() {
+				public void run() {
+					ConsoleInput.this.lines.add(marker);
+				}
+			}, clock.getNextBudgetMillis());
+		}
+
+		long startMillis = HashedWheelTimer.nowMillis();
+		try {
+			while (true) {
+				Object item = this.lines.take();
+				if (item == END_OF_INPUT) {
+					this.lines.add(END_OF_INPUT);
+					throw new NoSuchElementException("No line found");
+				}
+				if (item == marker) {
+					return null;
+				}
+				if (item instanceof String) {
+					return (String)item;
+				}
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		finally {
+			if (timeout != null) {
+				timeout.cancel();
+				clock.spend(HashedWheelTimer.nowMillis() - startMillis);
+			}
+		}
+	}
+}
@@ -1,6 +1,8 @@
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Scanner;
 import java.util.Collections;
+import java.util.Random;
 
 class Card implements Comparable<Card> {
 	private int value;
@@ -37,33 +39,67 @@ class Card implements Comparable<Card> {
 }
 
 class CardDeck {
+	public static final String[] SUITS = {"HEARTS", "DIAMONDS", "CLUBS", "SPADES", "JOKER"};
+	public static final int MAX_VALUE = 15;
+
 	private ArrayList<Card> cards;
 	private int curCardIdx;
+	private Random random;
+	// Counts and value sums of the undrawn cards, kept up to date by drawCard and addCard
+	// so the odds below never have to scan the deck.
+	private int[][] counts;
+	private int[] suitCounts;
+	private int[] suitSums;
 
 	public CardDeck(int numDecks) {
+		this(numDecks, new Random());
+	}
+
+	public CardDeck(int numDecks, Random random) {
 		this.cards = new ArrayList<Card>();
 		this.curCardIdx = 0;
+		this.random = random;
+		this.counts = new int[SUITS.length][MAX_VALUE + 1];
+		this.suitCounts = new int[SUITS.length];
+		this.suitSums = new int[SUITS.length];
 
 		String[] suits = {"HEARTS", "DIAMONDS", "CLUBS", "SPADES"};
 		int[] values = {2,3,4,5,6,7,8,9,10,11,12,13,14};
 		for (int ii = 0; ii < numDecks; ii++) {
 			for (String suit : suits) {
 				for (int value : values) {
-					this.cards.add(new Card(value, suit));
+					addCard(new Card(value, suit));
 				}
 			}
-			this.cards.add(new Card(15, "JOKER"));
-			this.cards.add(new Card(15, "JOKER"));
+			addCard(new Card(15, "JOKER"));
+			addCard(new Card(15, "JOKER"));
 		}
 	}
 
+	public static int suitIndex(String suit) {
+		for (int idx = 0; idx < SUITS.length; idx++) {
+			if (SUITS[idx].equals(suit)) {
+				return idx;
+			}
+		}
+		return -1;
+	}
+
+	private void countCard(Card card, int amount) {
+		int suitIdx = suitIndex(card.getSuit());
+		this.counts[suitIdx][card.getValue()] += amount;
+		this.suitCounts[suitIdx] += amount;
+		this.suitSums[suitIdx] += amount * card.getValue();
+	}
+
 	public Card drawCard() {
 		if (this.curCardIdx < this.cards.size()) {
-			int idx = (int)(Math.random() * getNumCards()) + this.curCardIdx;
+			int idx = this.random.nextInt(getNumCards()) + this.curCardIdx;
 			Card selectedCard = this.cards.get(idx);
 			this.cards.set(idx, this.cards.get(this.curCardIdx));
 			this.cards.set(this.curCardIdx, selectedCard);
 			this.curCardIdx++;
+			countCard(selectedCard, -1);
 			return selectedCard;
 		}
 		else {
@@ -73,11 +109,112 @@ class CardDeck {
 
 	public void addCard(Card card) {
 		this.cards.add(card);
+		countCard(card, 1);
 	}
 
 	public int getNumCards() {
 		return Math.max(this.cards.size() - this.curCardIdx, 0);
 	}
+
+	// The cards still to be drawn, in the order they are stored.
+	public ArrayList<Card> getUndrawnCards() {
+		return new ArrayList<Card>(this.cards.subList(this.curCardIdx, this.cards.size()));
+	}
+
+	public Random getRandom() {
+		return this.random;
+	}
+
+	public int getNumCards(String suit) {
+		return this.suitCounts[suitIndex(suit)];
+	}
+
+	public int getNumCards(String suit, int value) {
+		return this.counts[suitIndex(suit)][value];
+	}
+
+	// The number of undrawn cards that are not jokers.
+	public int getNumPlayableCards() {
+		return getNumCards() - this.suitCounts[suitIndex("JOKER")];
+	}
+
+	// The chance that the next drawCard() returns a card of this suit.
+	public double getDrawProbability(String suit) {
+		if (getNumCards() == 0) {
+			return 0;
+		}
+		return (double)getNumCards(suit) / getNumCards();
+	}
+
+	// The chance that the next drawCard() returns this exact card.
+	public double getDrawProbability(String suit, int value) {
+		if (getNumCards() == 0) {
+			return 0;
+		}
+		return (double)getNumCards(suit, value) / getNumCards();
+	}
+
+	// Drawing a JOKER means drawing again, so the card a player ends up with from
+	// "Draw a card" is uniform over the undrawn cards that aren't jokers. This is the
+	// chance that card has this suit and at least minValue.
+	public double getPlayableDrawProbability(String suit, int minValue) {
+		if (getNumPlayableCards() == 0) {
+			return 0;
+		}
+		int[] valueCounts = this.counts[suitIndex(suit)];
+		int count = 0;
+		for (int value = Math.max(minValue, 0); value <= MAX_VALUE; value++) {
+			count += valueCounts[value];
+		}
+		return (double)count / getNumPlayableCards();
+	}
+
+	public double getPlayableDrawProbability(String suit) {
+		if (getNumPlayableCards() == 0) {
+			return 0;
+		}
+		return (double)getNumCards(suit) / getNumPlayableCards();
+	}
+
+	// The expected number of points "Draw a card" adds to the stat of this suit.
+	public double getExpectedDrawGain(String suit) {
+		if (getNumPlayableCards() == 0) {
+			return 0;
+		}
+		return (double)this.suitSums[suitIndex(suit)] / getNumPlayableCards();
+	}
+
+	// The expected value of the card "Draw a card" gives, whatever its suit.
+	public double getExpectedDrawValue() {
+		if (getNumPlayableCards() == 0) {
+			return 0;
+		}
+		int sum = 0;
+		for (int idx = 0; idx < SUITS.length - 1; idx++) {
+			sum += this.suitSums[idx];
+		}
+		return (double)sum / getNumPlayableCards();
+	}
+
+	// The chance that "Draw a card" gives a club that would finish an enemy with this
+	// much health even if they defend with defenseValue.
+	public double getFinishProbability(int health, int defenseValue) {
+		return getPlayableDrawProbability("CLUBS", health + defenseValue);
+	}
+
+	// The chance that a defense card of this value blocks a club drawn from the deck.
+	public double getBlockProbability(int defenseValue) {
+		int numClubs = getNumCards("CLUBS");
+		if (numClubs == 0) {
+			return 1;
+		}
+		int[] clubCounts = this.counts[suitIndex("CLUBS")];
+		int blocked = 0;
+		for (int value = 0; value <= Math.min(defenseValue, MAX_VALUE); value++) {
+			blocked += clubCounts[value];
+		}
+		return (double)blocked / numClubs;
+	}
 }
 
 class Player implements Comparable<Player> {
@@ -88,8 +225,17 @@ class Player implements Comparable<Player> {
 	private int health;
 	private int speed;
 	private boolean isDead;
+	private Strategy strategy;
+	private int kills;
+	private int cardsStolen;
+	private int healthAtDeath;
+	private TurnClock clock;
 
 	public Player(String name, Game game) {
+		this(name, game, null);
+	}
+
+	public Player(String name, Game game, Strategy strategy) {
 		this.name = name;
 		this.game = game;
 		this.attackCards = new ArrayList<Card>();
@@ -97,6 +243,10 @@ class Player implements Comparable<Player> {
 		this.health = 15;
 		this.speed = 0;
 		this.isDead = false;
+		this.strategy = strategy;
+		this.kills = 0;
+		this.cardsStolen = 0;
+		this.healthAtDeath = 0;
 	}
 
 	private int getAttackSum() {
@@ -115,8 +265,20 @@ class Player implements Comparable<Player> {
 		return sum;
 	}
 
+	// Puts back the stats of a player restored by a GameArena. Their hand is added to
+	// directly before the game gets a ThreatIndex.
+	public void restore(int health, int speed, boolean isDead, int kills, int cardsStolen, int healthAtDeath) {
+		this.health = health;
+		this.speed = speed;
+		this.isDead = isDead;
+		this.kills = kills;
+		this.cardsStolen = cardsStolen;
+		this.healthAtDeath = healthAtDeath;
+	}
+
 	public void setDead() {
 		this.isDead = true;
+		this.game.updateThreats(this);
 	}
 
 	public boolean getDead() {
@@ -127,6 +289,36 @@ class Player implements Comparable<Player> {
 		return this.name;
 	}
 
+	public Strategy getStrategy() {
+		return this.strategy;
+	}
+
+	public TurnClock getClock() {
+		return this.clock;
+	}
+
+	public void setClock(TurnClock clock) {
+		this.clock = clock;
+	}
+
+	// Reads this player's answer to a decision, or returns null if their clock runs out
+	// first. Prompts that only wait for the screen to be handed over read without a clock.
+	public String readLine() {
+		return ConsoleInput.get().nextLine(this.clock);
+	}
+
+	public void appendClock(StringBuilder out) {
+		if (this.clock == null) {
+			return;
+		}
+		if (this.clock.isOutOfTime()) {
+			out.append("You are out of time, so your turns will be played for you.\n");
+		}
+		else {
+			out.append("You have " + (this.clock.getNextBudgetMillis() / 1000) + " seconds for each decision and " + (this.clock.getRemainingGameMillis() / 1000) + " seconds left in the game.\n");
+		}
+	}
+
 	public int getSpeed() {
 		return this.speed;
 	}
@@ -143,8 +335,29 @@ class Player implements Comparable<Player> {
 		return this.defenseCards;
 	}
 
+	public int getKills() {
+		return this.kills;
+	}
+
+	public void addKill() {
+		this.kills++;
+	}
+
+	public int getCardsStolen() {
+		return this.cardsStolen;
+	}
+
+	public int getHealthAtDeath() {
+		return this.healthAtDeath;
+	}
+
 	public void loseHealth(int amount) {
+		if (amount >= this.health) {
+			this.healthAtDeath = this.health;
+		}
 		this.health = Math.max(this.health - amount, 0);
+		this.game.publish(GameEvent.HEALTH_LOST, this, null, null, amount, this.health);
+		this.game.updateThreats(this);
 	}
 
 	public int compareTo(Player otherPlayer) {
@@ -167,125 +380,100 @@ class Player implements Comparable<Player> {
 		return this.attackCards.size() + this.defenseCards.size();
 	}
 
-	public void printStealableCards() {
-		System.out.println(this.name + "'s cards:");
-		System.out.println("\tCLUBS (attack):");
-		System.out.print("\t\t");
-		if (this.attackCards.size() > 0) {
-			Collections.sort(this.attackCards);
-			for (int idx = 0; idx < this.attackCards.size(); idx++) {
-				System.out.print(this.attackCards.get(idx).getValue() + "");
-				if (idx != this.attackCards.size() - 1) {
-					System.out.print(", ");
+	// Appends the sorted values of these cards, or a note that there are none.
+	private static void appendValues(StringBuilder out, ArrayList<Card> cards) {
+		out.append("\t\t");
+		if (cards.size() > 0) {
+			Collections.sort(cards);
+			for (int idx = 0; idx < cards.size(); idx++) {
+				out.append(cards.get(idx).getValue());
+				if (idx != cards.size() - 1) {
+					out.append(", ");
 				}
 			}
-			System.out.println();
+			out.append("\n");
 		}
 		else {
-			System.out.println("No cards of this suit.");
-		}
-		System.out.println("\tDIAMONDS (defense):");
-		System.out.print("\t\t");
-		if (this.defenseCards.size() > 0) {
-			Collections.sort(this.defenseCards);
-			for (int idx = 0; idx < this.defenseCards.size(); idx++) {
-				System.out.print(this.defenseCards.get(idx).getValue() + "");
-				if (idx != this.defenseCards.size() - 1) {
-					System.out.print(", ");
-				}
-			}
-			System.out.println();
-		}
-		else {
-			System.out.println("No cards of this suit.");
+			out.append("No cards of this suit.\n");
 		}
 	}
 
+	public void appendStealableCards(StringBuilder out) {
+		out.append(this.name + "'s cards:\n");
+		out.append("\tCLUBS (attack):\n");
+		appendValues(out, this.attackCards);
+		out.append("\tDIAMONDS (defense):\n");
+		appendValues(out, this.defenseCards);
+	}
+
 	public void drawInitialCards() {
-		Scanner scan = new Scanner(System.in);
 		clearScreen();
 		System.out.println("You are " + this.name + ".");
 		System.out.println("You will now draw six cards and add each card to your stat values");
 		System.out.println("You start with no attack cards, no defense cards, 15 health, and 0 speed.");
-		drawCards(6);
+		StringBuilder out = new StringBuilder();
+		drawCards(6, out);
+		System.out.print(out);
 		System.out.println("You are finished drawing cards.");
 		System.out.println("You will now discard your HEARTS and SPADES cards because their values have already been added to your stats.");
 		System.out.println();
 		printStats();
 		System.out.print("Press enter to finish your turn.");
-		scan.nextLine();
+		ConsoleInput.get().nextLine();
 		clearScreen();
 	}
 
-	public void drawCards(int numCards) {
+	// Describes each card drawn to out, or draws quietly if out is null.
+	public void drawCards(int numCards, StringBuilder out) {
 		while (numCards > 0) {
 			Card card = this.game.getDeck().drawCard();
 			if (card == null) {
-				System.out.println("\tOh no! The deck is out of cards!");
-				System.out.println("\tYou don't get to draw any more cards.");
-				numCards = 0;
+				if (out != null) {
+					out.append("\tOh no! The deck is out of cards!\n");
+					out.append("\tYou don't get to draw any more cards.\n");
+				}
+				return;
 			}
-			else {
-				if (card.getSuit().equals("JOKER")) {
-					System.out.println("\tYou drew a JOKER, so you get to draw an extra card. (Jokers are not playable cards.)");
-					numCards += 1;
+			this.game.publish(GameEvent.CARD_DRAWN, this, null, card, 0, 0);
+			if (card.getSuit().equals("JOKER")) {
+				if (out != null) {
+					out.append("\tYou drew a JOKER, so you get to draw an extra card. (Jokers are not playable cards.)\n");
 				}
-				else {
-					System.out.print("\tYou drew a " + card + ".");
-					if (card.getSuit().equals("HEARTS")) {
-						System.out.println(" This adds " + card.getValue() + " points to your health.");
-					}
-					else if (card.getSuit().equals("SPADES")) {
-						System.out.println(" This adds " + card.getValue() + " points to your speed.");
-					}
-					else {
-						System.out.println();
-					}
-					this.addCardToStats(card);
-					numCards -= 1;
+				continue;
+			}
+			if (out != null) {
+				out.append("\tYou drew a " + card + ".");
+				if (card.getSuit().equals("HEARTS")) {
+					out.append(" This adds " + card.getValue() + " points to your health.");
+				}
+				else if (card.getSuit().equals("SPADES")) {
+					out.append(" This adds " + card.getValue() + " points to your speed.");
 				}
+				out.append("\n");
 			}
+			this.addCardToStats(card);
+			numCards -= 1;
 		}
 	}
 
+	public void appendStats(StringBuilder out) {
+		out.append(this.name + "'s cards:\n");
+		out.append("\tCLUBS (attack):\n");
+		appendValues(out, this.attackCards);
+		out.append("\t\tTotal: " + getAttackSum() + "\n");
+		out.append("\tDIAMONDS (defense):\n");
+		appendValues(out, this.defenseCards);
+		out.append("\t\tTotal: " + getDefenseSum() + "\n");
+		out.append("\tHEARTS (health):\n");
+		out.append("\t\tTotal: " + this.health + "\n");
+		out.append("\tSPADES (speed):\n");
+		out.append("\t\tTotal: " + this.speed + "\n");
+	}
+
 	public void printStats() {
-		System.out.println(this.name + "'s cards:");
-		System.out.println("\tCLUBS (attack):");
-		System.out.print("\t\t");
-		if (this.attackCards.size() > 0) {
-			Collections.sort(this.attackCards);
-			for (int idx = 0; idx < this.attackCards.size(); idx++) {
-				System.out.print(this.attackCards.get(idx).getValue() + "");
-				if (idx != this.attackCards.size() - 1) {
-					System.out.print(", ");
-				}
-			}
-			System.out.println();
-		}
-		else {
-			System.out.println("No cards of this suit.");
-		}
-		System.out.println("\t\tTotal: " + getAttackSum());
-		System.out.println("\tDIAMONDS (defense):");
-		System.out.print("\t\t");
-		if (this.defenseCards.size() > 0) {
-			Collections.sort(this.defenseCards);
-			for (int idx = 0; idx < this.defenseCards.size(); idx++) {
-				System.out.print(this.defenseCards.get(idx).getValue() + "");
-				if (idx != this.defenseCards.size() - 1) {
-					System.out.print(", ");
-				}
-			}
-			System.out.println();
-		}
-		else {
-			System.out.println("No cards of this suit.");
-		}
-		System.out.println("\t\tTotal: " + getDefenseSum());
-		System.out.println("\tHEARTS (health):");
-		System.out.println("\t\tTotal: " + this.health);
-		System.out.println("\tSPADES (speed):");
-		System.out.println("\t\tTotal: " + this.speed);
+		StringBuilder out = new StringBuilder();
+		appendStats(out);
+		System.out.print(out);
 	}
 
 	public void addCardToStats(Card card) {
@@ -301,351 +489,107 @@ class Player implements Comparable<Player> {
 		else if (card.getSuit().equals("SPADES")) {
 			this.speed += card.getValue();
 		}
+		this.game.updateThreats(this);
 	}
 
-	public void doTurn() {
-		Scanner scan = new Scanner(System.in);
-		clearScreen();
-		System.out.println("You are " + this.name + ".");
-		this.printStats();
-		System.out.println();
-
-		String inp = "";
-		boolean turnFinished = false;
-		while (!turnFinished) {
-			System.out.println("What would you like to do?");
-			System.out.println("1. Attack a player");
-			System.out.println("2. Draw a card");
-			System.out.println("3. Finish turn");
-
-			boolean haveValidInput = false;
-			while (!haveValidInput) {
-				System.out.print("?> ");
-				inp = scan.nextLine().trim().toLowerCase();
-				if (inp.equals("1")) {
-					haveValidInput = true;
-					if (this.attackCards.size() == 0) {
-						System.out.println("You have no attack cards. You can not attack.");
-						System.out.println();
-					}
-					else {
-						turnFinished = doAttack();
-					}
-				}
-				else if (inp.equals("2")) {
-					haveValidInput = true;
-					if (this.game.getDeck().getNumCards() == 0) {
-						System.out.println("The deck has no cards, so you cannot draw one.");
-						System.out.println();
-					}
-					else {
-						turnFinished = true;
-						doDrawCard();
-					}
-				}
-				else if (inp.equals("3")) {
-					haveValidInput = true;
-					turnFinished = true;
-					System.out.println("Finishing turn.");
-				}
-				else if (!inp.equals("")) {
-					System.out.println("Invalid input.");
-				}
-			}
+	// Plays a card in an attack or a defense. Spent cards go back into the deck.
+	public void spendCard(Card card) {
+		this.game.publish(GameEvent.CARD_REMOVED, this, null, card, 0, 0);
+		if (card.getSuit().equals("CLUBS")) {
+			this.attackCards.remove(card);
 		}
-
-		if (!inp.equals("1")) {
-			System.out.print("Press enter to finish your turn.");
-			scan.nextLine();
+		else if (card.getSuit().equals("DIAMONDS")) {
+			this.defenseCards.remove(card);
 		}
-		clearScreen();
+		this.game.getDeck().addCard(card);
+		this.game.updateThreats(this);
 	}
 
-	public void doDrawCard() {
-		System.out.println("You will now draw one card.");
-		drawCards(1);
-		System.out.println("You are finished drawing cards.");
-		System.out.println();
-		printStats();
-	}
-
-	public boolean doAttack() {
-		Scanner scan = new Scanner(System.in);
-		System.out.print("You have these attack cards: ");
-		Collections.sort(this.attackCards);
-		for (int idx = 0; idx < this.attackCards.size(); idx++) {
-			System.out.print(this.attackCards.get(idx).getValue() + "");
-			if (idx != this.attackCards.size() - 1) {
-				System.out.print(", ");
-			}
-		}
-		System.out.println();
-		System.out.println("Which card would you like to attack with? (enter 'q' to cancel)");
-
-		Card attackCard = null;
-		while (attackCard == null) {
-			System.out.print("?> ");
-			String inp = scan.nextLine().trim().toLowerCase();
-			if (inp.equals("q")) {
-				System.out.println();
-				return false;
-			}
-			else if (!inp.equals("")) {
-				try {
-					int attackValue = Integer.parseInt(inp);
-					for (Card card : this.attackCards) {
-						if (card.getValue() == attackValue) {
-							attackCard = card;
-							break;
-						}
-					}
-					if (attackCard == null) {
-						System.out.println("You don't have that card.");
-					}
-				}
-				catch (NumberFormatException ex) {
-					System.out.println("Invalid input.");
-				}
-			}
-		}
-		System.out.println("You are attacking with a value of " + attackCard.getValue() + ".");
-
-		Player enemy = null;
-		System.out.println("Who would you like to attack? (enter 'q' to cancel)");
+	public ArrayList<Player> getEnemies() {
 		ArrayList<Player> enemies = new ArrayList<Player>();
-		for (int idx = 0; idx < this.game.getAlivePlayers().size(); idx++) {
-			Player player = this.game.getAlivePlayers().get(idx);
+		for (Player player : this.game.getAlivePlayers()) {
 			if (player != this) {
 				enemies.add(player);
-				System.out.println((enemies.size()) + ". " + player.getName());
-			}
-		}
-		while (enemy == null) {
-			System.out.print("?> ");
-			String inp = scan.nextLine().trim().toLowerCase();
-			if (inp.equals("q")) {
-				System.out.println();
-				return false;
-			}
-			else if (!inp.equals("")) {
-				int inpNum = -1;
-				try {
-					inpNum = Integer.parseInt(inp);
-				}
-				catch (NumberFormatException ex) {}
-				if (inpNum > 0 && inpNum <= enemies.size()) {
-					enemy = enemies.get(inpNum-1);
-				}
-				else {
-					System.out.println("Invalid input.");
-				}
 			}
 		}
-		System.out.println("You are attacking " + enemy.getName() + " with a value of " + attackCard.getValue() + ".");
-
-		this.attackCards.remove(attackCard);
-		this.game.getDeck().addCard(attackCard);
-		System.out.print("Press enter to perform the attack.");
-		scan.nextLine();
-		clearScreen();
-		this.game.performAttack(this, enemy, attackCard.getValue());
-		return true;
+		return enemies;
 	}
 
-	public void doWasAttacked(Player attacker, int attackValue) {
-		Scanner scan = new Scanner(System.in);
-		System.out.println("You are " + this.name + ".");
-		System.out.println(attacker.getName() + " is attacking you!");
-		printStats();
-		System.out.println();
-
-		Card defenseCard = null;
-		if (this.defenseCards.size() == 0) {
-			System.out.println("You have no defense cards. You must endure the attack.");
-		}
-		else {
-			System.out.print("You have these defense cards: ");
-			Collections.sort(this.defenseCards);
-			for (int idx = 0; idx < this.defenseCards.size(); idx++) {
-				System.out.print(this.defenseCards.get(idx).getValue() + "");
-				if (idx != this.defenseCards.size() - 1) {
-					System.out.print(", ");
-				}
-			}
-			System.out.println();
-			System.out.println("Which card would you like to defend with? (enter 'x' to use no defense card)");
-			while (defenseCard == null) {
-				System.out.print("?> ");
-				String inp = scan.nextLine().trim().toLowerCase();
-				if (inp.equals("x")) {
-					break;
-				}
-				else if (!inp.equals("")) {
-					try {
-						int defenseValue = Integer.parseInt(inp);
-						for (Card card : this.defenseCards) {
-							if (card.getValue() == defenseValue) {
-								defenseCard = card;
-								break;
-							}
-						}
-						if (defenseCard == null) {
-							System.out.println("You don't have that card.");
-						}
-					}
-					catch (NumberFormatException ex) {
-						System.out.println("Invalid input.");
-					}
-				}
-			}
-
-			if (defenseCard == null) {
-				System.out.println("You will not use a defense card.");
-			}
-			else {
-				System.out.println("You are defending with a value of " + defenseCard.getValue() + ".");
-				this.defenseCards.remove(defenseCard);
-			}
-			System.out.print("Press enter to continue.");
-			scan.nextLine();
-			clearScreen();
-
-			if (defenseCard == null) {
-				this.game.completeAttack(attacker, this, attackValue, 0);
-			}
-			else {
-				this.game.completeAttack(attacker, this, attackValue, defenseCard.getValue());
-			}
+	public void appendDrawOdds(StringBuilder out) {
+		CardDeck deck = this.game.getDeck();
+		if (deck.getNumPlayableCards() == 0) {
+			out.append("There are no cards left to draw.\n");
+			return;
 		}
+		out.append("If you draw a card, you can expect to gain:\n");
+		out.append(String.format("\t%.1f attack (%.0f%% chance of a CLUB)\n", deck.getExpectedDrawGain("CLUBS"), 100 * deck.getPlayableDrawProbability("CLUBS")));
+		out.append(String.format("\t%.1f defense (%.0f%% chance of a DIAMOND)\n", deck.getExpectedDrawGain("DIAMONDS"), 100 * deck.getPlayableDrawProbability("DIAMONDS")));
+		out.append(String.format("\t%.1f health (%.0f%% chance of a HEART)\n", deck.getExpectedDrawGain("HEARTS"), 100 * deck.getPlayableDrawProbability("HEARTS")));
+		out.append(String.format("\t%.1f speed (%.0f%% chance of a SPADE)\n", deck.getExpectedDrawGain("SPADES"), 100 * deck.getPlayableDrawProbability("SPADES")));
 	}
 
-	public void doStealCardsFromPlayer(Player victim, int numCards) {
-		Scanner scan = new Scanner(System.in);
-		int numCardsChosen = 0;
-		int numStealableCards = victim.getNumStealableCards();
-		if (numStealableCards < numCards) {
-			String pluralized = (numStealableCards > 1) ? "cards" : "card";
-			System.out.println(victim.getName() + " only has " + numStealableCards + " " + pluralized + " so " + this.name + " only gets to steal " + numStealableCards + " " + pluralized + ".");
-			numCards = numStealableCards;
-		}
-		while (numCards > 0) {
-			if (numCards == 1 && numCardsChosen == 0) {
-				System.out.println(this.name + ", choose the suit of your card:");
-			}
-			else if (numCardsChosen == 0) {
-				System.out.println(this.name + ", choose the suit of your first card:");
-			}
-			else if (numCardsChosen == 1) {
-				System.out.println(this.name + ", choose the suit of your second card:");
-			}
-			else if (numCardsChosen == 2) {
-				System.out.println(this.name + ", choose the suit of your third card:");
-			}
-			System.out.println("1. CLUBS (attack)");
-			System.out.println("2. DIAMONDS (defense)");
-			String suit = "";
-			while (suit.equals("")) {
-				System.out.print("?> ");
-				String inp = scan.nextLine().trim().toLowerCase();
-				if (inp.equals("1")) {
-					if (victim.getAttackCards().size() == 0) {
-						System.out.println(victim.getName() + " has no attack cards. Choose another suit.");
-					}
-					else {
-						suit = "CLUBS";
-					}
-				}
-				else if (inp.equals("2")) {
-					if (victim.getDefenseCards().size() == 0) {
-						System.out.println(victim.getName() + " has no defense cards. Choose another suit.");
-					}
-					else {
-						suit = "DIAMONDS";
-					}
-				}
-				else if (!inp.equals("")) {
-					System.out.println("Invalid input.");
-				}
-			}
-
-			ArrayList<Card> possibleCards = null;
-			if (suit.equals("CLUBS")) {
-				possibleCards = victim.getAttackCards();
-				System.out.println(victim.getName() + " has these attack cards: ");
-			}
-			else if (suit.equals("DIAMONDS")) {
-				possibleCards = victim.getDefenseCards();
-				System.out.println(victim.getName() + " has these defense cards: ");
-			}
-			Collections.sort(possibleCards);
-			for (int idx = 0; idx < possibleCards.size(); idx++) {
-				System.out.print(possibleCards.get(idx).getValue() + "");
-				if (idx != possibleCards.size() - 1) {
-					System.out.print(", ");
-				}
-			}
-			System.out.println();
-
-			System.out.println("Which value will you steal?");
-			Card stolenCard = null;
-			while (stolenCard == null) {
-				System.out.println("?> ");
-				String inp = scan.nextLine().trim().toLowerCase();
-				if (!inp.equals("")) {
-					try {
-						int value = Integer.parseInt(inp);
-						for (Card card : possibleCards) {
-							if (card.getValue() == value) {
-								stolenCard = card;
-								break;
-							}
-						}
-						if (stolenCard == null) {
-							System.out.println(victim.getName() + " doesn't have that card.");
-						}
-					}
-					catch (NumberFormatException ex) {
-						System.out.println("Invalid input.");
-					}
-				}
-			}
-
-			if (suit.equals("CLUBS")) {
-				victim.removeCard(stolenCard);
-				this.attackCards.add(stolenCard);
-			}
-			else if (suit.equals("DIAMONDS")) {
-				victim.removeCard(stolenCard);
-				this.defenseCards.add(stolenCard);
-			}
-
-			System.out.println(this.name + " stole the " + stolenCard.getValue() + " of " + suit + " from " + victim.getName() + ".");
-			System.out.println();
-			victim.printStealableCards();
-			System.out.println();
+	public void stealCard(Player victim, Card card) {
+		victim.removeCard(card);
+		this.addCardToStats(card);
+		this.cardsStolen++;
+	}
 
-			numCards--;
-			numCardsChosen++;
+	public Card getHighestStealableCard() {
+		Card attackCard = GreedyStrategy.highest(this.attackCards);
+		Card defenseCard = GreedyStrategy.highest(this.defenseCards);
+		if (defenseCard == null || (attackCard != null && attackCard.getValue() >= defenseCard.getValue())) {
+			return attackCard;
 		}
+		return defenseCard;
 	}
 
 	public void removeCard(Card card) {
+		this.game.publish(GameEvent.CARD_REMOVED, this, null, card, 0, 0);
 		if (card.getSuit().equals("CLUBS")) {
 			this.attackCards.remove(card);
 		}
 		else if (card.getSuit().equals("DIAMONDS")) {
 			this.defenseCards.remove(card);
 		}
+		this.game.updateThreats(this);
 	}
 }
 
 public class Game {
 	private ArrayList<Player> players;
 	private CardDeck deck;
+	private Random random;
+	private ArrayList<Player> deathOrder;
+	private GameEventBus eventBus;
+	private StatsStore statsStore;
+	private long decisionMillis;
+	private long gameMillis;
+	private ThreatIndex threatIndex;
 
 	public Game() {
 		this.players = new ArrayList<Player>();
 		this.deck = new CardDeck(2);
+		this.random = new Random();
+		this.deathOrder = new ArrayList<Player>();
+	}
+
+	// A seeded game, for headless bot games and for hosted games. The deck and the bots
+	// get separate generators so that the same seed deals the same cards no matter which
+	// strategies are seated. Both can be saved exactly, so a hosted game can be parked.
+	public Game(long seed) {
+		this.players = new ArrayList<Player>();
+		this.deck = new CardDeck(2, new GameRandom(seed));
+		this.random = new GameRandom(seed ^ 0x5DEECE66DL);
+		this.deathOrder = new ArrayList<Player>();
+	}
+
+	// A game restored by a GameArena, which carries on with the parked game's deck and
+	// generator.
+	public Game(CardDeck deck, Random random) {
+		this.players = new ArrayList<Player>();
+		this.deck = deck;
+		this.random = random;
+		this.deathOrder = new ArrayList<Player>();
 	}
 
 	public ArrayList<Player> getPlayers() {
@@ -672,19 +616,165 @@ public class Game {
 
 	public static void main(String[] args) {
 		Game game = new Game();
+		String logPath = null;
+		int argIdx = 0;
+		if (args.length > 1 && args[0].equals("-log")) {
+			logPath = args[1];
+			argIdx = 2;
+		}
+		try {
+			if (args.length > argIdx) {
+				game.setTimeLimits(Long.parseLong(args[argIdx]) * 1000, (args.length > argIdx + 1) ? Long.parseLong(args[argIdx + 1]) * 60000 : Long.MAX_VALUE);
+			}
+		}
+		catch (NumberFormatException ex) {
+			System.out.println("Usage: java Game [-log file] [secondsPerDecision [minutesPerGame]]");
+			return;
+		}
+		GameEventLog eventLog = null;
+		if (logPath != null) {
+			GameEventBus eventBus = new GameEventBus(4096);
+			try {
+				eventLog = new GameEventLog(eventBus, new File(logPath));
+				game.setEventBus(eventBus);
+			}
+			catch (IOException ex) {
+				System.out.println("Could not open the event log, so this game won't be logged: " + ex.getMessage());
+			}
+		}
+		StatsStore statsStore = null;
+		try {
+			statsStore = new StatsStore(new File("stats"));
+			game.setStatsStore(statsStore);
+		}
+		catch (IOException ex) {
+			System.out.println("Could not open the stats store, so this game won't be recorded: " + ex.getMessage());
+		}
+		game.setThreatIndex(new ThreatIndex());
 		game.doAddPlayersPhase();
+		if (eventLog != null) {
+			try {
+				eventLog.close();
+			}
+			catch (IOException ex) {
+				System.out.println("Could not save the event log: " + ex.getMessage());
+			}
+		}
+		if (statsStore != null) {
+			try {
+				statsStore.close();
+				statsStore.printLeaderboard(5);
+			}
+			catch (IOException ex) {
+				System.out.println("Could not save the stats from this game: " + ex.getMessage());
+			}
+		}
 	}
 
 	public CardDeck getDeck() {
 		return this.deck;
 	}
 
+	public Random getRandom() {
+		return this.random;
+	}
+
+	public ArrayList<Player> getDeathOrder() {
+		return this.deathOrder;
+	}
+
+	public GameEventBus getEventBus() {
+		return this.eventBus;
+	}
+
+	// Events are only published once a bus is set. The thread playing this game becomes
+	// the bus's producer, so a bus can be shared by games played one after another on the
+	// same thread but not by games running at the same time.
+	public void setEventBus(GameEventBus eventBus) {
+		this.eventBus = eventBus;
+	}
+
+	// Players added after this get a TurnClock. When a player runs out of time, the
+	// prompt they were stuck on picks a default for them.
+	public void setTimeLimits(long decisionMillis, long gameMillis) {
+		this.decisionMillis = decisionMillis;
+		this.gameMillis = gameMillis;
+	}
+
+	public void setStatsStore(StatsStore statsStore) {
+		this.statsStore = statsStore;
+	}
+
+	public ThreatIndex getThreatIndex() {
+		return this.threatIndex;
+	}
+
+	// Indexes the players so far. Players added later are indexed the first time their
+	// hand or health changes, which is when they draw their initial cards.
+	public void setThreatIndex(ThreatIndex threatIndex) {
+		this.threatIndex = threatIndex;
+		for (Player player : this.players) {
+			updateThreats(player);
+		}
+	}
+
+	public void updateThreats(Player player) {
+		if (this.threatIndex != null) {
+			this.threatIndex.update(player);
+		}
+	}
+
+	// Hands every player's result to the stats store, which writes it in the background.
+	// Throws the store's write error if it can no longer save anything.
+	public void recordResults() throws IOException {
+		if (this.statsStore == null) {
+			return;
+		}
+		ArrayList<Player> everyone = new ArrayList<Player>(this.players);
+		for (Player player : this.deathOrder) {
+			if (!everyone.contains(player)) {
+				everyone.add(player);
+			}
+		}
+		ArrayList<Player> alivePlayers = getAlivePlayers();
+		ArrayList<PlayerStats> results = new ArrayList<PlayerStats>();
+		for (Player player : everyone) {
+			boolean won = alivePlayers.size() == 1 && alivePlayers.get(0) == player;
+			results.add(PlayerStats.fromGame(player, won));
+		}
+		this.statsStore.record(results);
+	}
+
+	public void publish(int type, Player player, Player otherPlayer, Card card, int value, int otherValue) {
+		if (this.eventBus != null) {
+			this.eventBus.publish(type, this, player, otherPlayer, card, value, otherValue);
+		}
+	}
+
+	// Plays a whole game of bots with no input, through a quiet GameFlow. Returns the
+	// winner, or null if nobody has won after maxRounds rounds.
+	public Player playHeadless(int maxRounds) {
+		for (Player player : this.players) {
+			if (player.getStrategy() == null) {
+				throw new IllegalStateException(player.getName() + " is a person, so the game can't be played headless.");
+			}
+		}
+		for (Player player : this.players) {
+			player.drawCards(6, null);
+		}
+		GameFlow flow = new GameFlow(this);
+		flow.setQuiet(true);
+		flow.setMaxBotRounds(maxRounds);
+		flow.start();
+		return flow.getWinner();
+	}
+
 	public void clearScreen() {
 		System.out.println(((char)27) + "[2J" + ((char)27) + "[0;0H");
 	}
 
 	public void doAddPlayersPhase() {
-		Scanner scan = new Scanner(System.in);
+		ConsoleInput scan = ConsoleInput.get();
 		clearScreen();
 		System.out.println("Add at least 2 players.");
 		System.out.println();
@@ -710,7 +800,11 @@ public class Game {
 					haveValidInput = true;
 					System.out.print("Player's name? ");
 					String name = scan.nextLine();
-					this.players.add(new Player(name, this));
+					Player player = new Player(name, this);
+					if (this.decisionMillis > 0) {
+						player.setClock(new TurnClock(this.decisionMillis, this.gameMillis));
+					}
+					this.players.add(player);
 					System.out.println();
 				}
 				else if (inp.equals("2")) {
@@ -736,7 +830,7 @@ public class Game {
 	}
 
 	public void doSetupPhase() {
-		Scanner scan = new Scanner(System.in);
+		ConsoleInput scan = ConsoleInput.get();
 		clearScreen();
 		System.out.println("This game uses 2 decks of cards. That means there are 102 cards in total.");
 		System.out.println("Each player will now draw six cards to determine their initial stats.");
@@ -756,137 +850,76 @@ public class Game {
 		this.doPlayPhase();
 	}
 
+	// Drives a GameFlow from the console. Everyone shares one screen, so the screen is
+	// cleared and handed over whenever the flow starts waiting on somebody else. Passing
+	// the screen over isn't a decision, so those prompts wait without a clock.
 	public void doPlayPhase() {
-		Scanner scan = new Scanner(System.in);
+		ConsoleInput scan = ConsoleInput.get();
 		clearScreen();
-		System.out.println("Starting play phase. Have fun!");
-		System.out.println();
-
-		boolean gameOver = false;
-		while (!gameOver) {
-			System.out.println("The turn order is based on the speed stat. The turn order this round is:");
-			Collections.sort(this.players);
-			System.out.println("\t" + String.join(", ", getPlayerNames()));
-			System.out.println();
-
-			ArrayList<Player> deadPlayers = new ArrayList<Player>();
-			for (Player player : this.players) {
-				if (player.getDead()) {
-					deadPlayers.add(player);
-					continue;
+		GameFlow flow = new GameFlow(this);
+		flow.start();
+
+		Player viewer = null;
+		int promptedDecision = -1;
+		while (!flow.isOver()) {
+			Player player = flow.getWaitingPlayer();
+			System.out.print(flow.takeOutput());
+			if (player != viewer) {
+				if (viewer != null) {
+					System.out.print("Press enter to continue.");
+					scan.nextLine();
+					clearScreen();
 				}
-				System.out.println("It is " + player.getName() + "'s turn. Only " + player.getName() + " may look at the screen.");
-				System.out.print("Press enter to start " + player.getName() + "'s turn.");
+				System.out.println("It is " + player.getName() + "'s turn to decide. Only " + player.getName() + " may look at the screen.");
+				System.out.print("Press enter to continue.");
 				scan.nextLine();
-				player.doTurn();
-				gameOver = (getAlivePlayers().size() == 1);
-				if (gameOver) {
-					break;
-				}
+				clearScreen();
+				viewer = player;
 			}
-
-			for (Player player : deadPlayers) {
-				this.players.remove(player);
+			if (flow.getDecisionNumber() != promptedDecision) {
+				System.out.print(flow.getPrompt());
+				promptedDecision = flow.getDecisionNumber();
 			}
-
-			if (!gameOver) {
-				System.out.println("The round is over.");
-				System.out.print("Press enter to start the next round.");
-				scan.nextLine();
+			System.out.print("?> ");
+			String line = player.readLine();
+			if (line == null) {
+				System.out.println();
+				flow.timeOut();
+			}
+			else {
+				flow.submit(line);
 			}
-			clearScreen();
 		}
 
-		System.out.println("The game is over.");
-		System.out.println("The winner is: " + this.players.get(0).getName());
+		System.out.print(flow.takeOutput());
 		System.out.print("Press enter to quit.");
 		scan.nextLine();
 	}
 
-	public void performAttack(Player attacker, Player victim, int attackValue) {
-		Scanner scan = new Scanner(System.in);
-		System.out.println(attacker.getName() + " is attacking " + victim.getName() + ". Only " + victim.getName() + " may look at the screen.");
-		System.out.print("Press enter to continue.");
-		scan.nextLine();
-		clearScreen();
-		victim.doWasAttacked(attacker, attackValue);
-	}
-
-	public void completeAttack(Player attacker, Player victim, int attackValue, int defenseValue) {
-		Scanner scan = new Scanner(System.in);
-		System.out.println(attacker.getName() + " attacked with a value of " + attackValue + ".");
-		if (defenseValue == 0) {
-			System.out.println(victim.getName() + " did not defend.");
-		}
-		else {
-			System.out.println(victim.getName() + " defended with a value of " + defenseValue + ".");
-		}
-
-		if (attackValue > defenseValue) {
-			System.out.println(attacker.getName() + "'s attack was successful.");
-			int numHealthLost = attackValue - defenseValue;
-			if (numHealthLost > 1) {
-				System.out.println(victim.getName() + " lost " + numHealthLost + " health points.");
-			}
-			else {
-				System.out.println(victim.getName() + " lost " + numHealthLost + " health point.");
-			}
-			victim.loseHealth(numHealthLost);
-			if (victim.getHealth() == 0) {
-				playerDied(attacker, victim);
-			}
+	// Applies the damage once the defense is known. Returns whether the victim died, in
+	// which case they are already marked dead but still hold their cards to be stolen.
+	public boolean resolveAttack(Player attacker, Player victim, int attackValue, int defenseValue) {
+		publish(GameEvent.ATTACK_COMPLETED, attacker, victim, null, attackValue, defenseValue);
+		if (attackValue <= defenseValue) {
+			return false;
 		}
-		else {
-			System.out.println(victim.getName() + "'s defense was successful.");
+		victim.loseHealth(attackValue - defenseValue);
+		if (victim.getHealth() > 0) {
+			return false;
 		}
-		System.out.print("Press enter to end " + attacker.getName() + "'s turn.");
-		scan.nextLine();
-	}
-
-	public void playerDied(Player attacker, Player victim) {
 		victim.setDead();
-		System.out.println(victim.getName() + " died!");
-		System.out.println();
-		victim.printStealableCards();
-		System.out.println();
-		if (victim.getNumStealableCards() > 0) {
-			System.out.println(attacker.getName() + " gets to steal 3 attack or defense cards from " + victim.getName() + ".");
-			attacker.doStealCardsFromPlayer(victim, 3);
-		}
-		else {
-			System.out.println(victim.getName() + " has no cards to steal.");
-			return;
-		}
-
-		if (victim.getNumStealableCards() == 0) {
-			System.out.println(victim.getName() + " has no more cards.");
-			return;
-		}
-
-		if (getAlivePlayers().size() > 1) {
-			System.out.println("Each other player, ordered by their speed stat, gets to steal 1 attack or defense card from " + victim.getName() + ".");
-			System.out.println();
-			victim.printStealableCards();
-			System.out.println();
-			Collections.sort(this.players);
-			for (Player player : getAlivePlayers()) {
-				if (player != attacker) {
-					player.doStealCardsFromPlayer(victim, 1);
-					if (victim.getNumStealableCards() == 0) {
-						System.out.println(victim.getName() + " has no more cards.");
-						return;
-					}
-				}
-			}
-		}
+		this.deathOrder.add(victim);
+		attacker.addKill();
+		publish(GameEvent.PLAYER_DIED, victim, attacker, null, victim.getNumStealableCards(), 0);
+		return true;
+	}
 
+	public void returnCardsToDeck(Player victim) {
 		for (Card card : victim.getAttackCards()) {
 			this.deck.addCard(card);
 		}
 		for (Card card : victim.getDefenseCards()) {
 			this.deck.addCard(card);
 		}
-
-		System.out.println("Everyone has stolen their cards.");
 	}
 }
@@ -0,0 +1,378 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Parks idle hosted games off the heap. A live game is a Game, its Players, their hands
+// and a CardDeck of Card objects, and a GameFlow pointing into all of them. A parked
+// game is one fixed-size record in a direct buffer: the flow's place, every seat's stats
+// and hand, and the undrawn cards in order, all as small numbers. Players are referred to
+// by seat number. The garbage collector never looks inside the buffers, so it doesn't
+// matter how many games are parked, and a game only becomes objects again while it is
+// being played.
+//
+// Records live in chunks of SLOTS_PER_CHUNK so the arena can grow without copying. Each
+// slot belongs to one game, and the caller makes sure only one thread uses a slot at a
+// time; the arena only locks to hand out and take back slots.
+//
+// The game's generators are GameRandoms, and parking saves their exact state, so a game
+// plays out the same whether or not it was parked, and however often.
+class GameArena {
+	public static final int MAX_DECK_CARDS = 108;
+	public static final int MAX_HAND_CARDS = 26;
+	public static final int MAX_NAME_BYTES = 31;
+	private static final int SLOTS_PER_CHUNK = 1024;
+	private static final int NO_SEAT = 0xFF;
+
+	// Bots are stored as an index into these and rebuilt from them, so only a bot that is
+	// exactly one of these can be parked: not a wrapper around one, and not a learned bot
+	// with trained weights.
+	private static final String[] STRATEGY_NAMES = {"random", "greedy", "search", "learned"};
+	private static final Strategy[] STRATEGIES = Simulation.getStrategies(STRATEGY_NAMES);
+
+	// Where each field starts in a game record.
+	private static final int STATE = 0;
+	private static final int NUM_SEATS = 1;
+	private static final int NUM_IN_PLAYERS = 2;
+	private static final int TURN_IDX = 3;
+	private static final int DECISION_NUMBER = 4;
+	private static final int ROUND = 8;
+	private static final int PLAYER = 12;
+	private static final int VICTIM = 13;
+	private static final int ATTACK_VALUE = 14;
+	private static final int STEAL_SUIT = 15;
+	private static final int KILLER_STEALS = 16;
+	private static final int STEAL_IDX = 17;
+	private static final int NUM_DEATHS = 18;
+	private static final int NUM_DECK_CARDS = 19;
+	private static final int DECK_STATE = 20;
+	private static final int BOT_STATE = 28;
+	private static final int TURN_ORDER = 36;
+
+	// Where each field starts in a seat record.
+	private static final int NAME = 0;
+	private static final int STRATEGY = 32;
+	private static final int DEAD = 33;
+	private static final int HEALTH = 34;
+	private static final int SPEED = 36;
+	private static final int KILLS = 38;
+	private static final int CARDS_STOLEN = 40;
+	private static final int HEALTH_AT_DEATH = 42;
+	private static final int HAS_CLOCK = 44;
+	private static final int DECISION_MILLIS = 48;
+	private static final int REMAINING_GAME_MILLIS = 56;
+	private static final int ATTACK_CARDS = 64;
+	private static final int DEFENSE_CARDS = ATTACK_CARDS + 1 + MAX_HAND_CARDS;
+	private static final int SEAT_BYTES = DEFENSE_CARDS + 1 + MAX_HAND_CARDS;
+
+	private int maxPlayers;
+	private int targetsOffset;
+	private int stealersOffset;
+	private int deathOrderOffset;
+	private int deckOffset;
+	private int seatsOffset;
+	private int recordBytes;
+
+	private volatile ByteBuffer[] chunks;
+	private int numSlots;
+	private int[] freeSlots;
+	private int numFreeSlots;
+
+	public GameArena(int maxPlayers) {
+		this.maxPlayers = maxPlayers;
+		this.targetsOffset = TURN_ORDER + 1 + maxPlayers;
+		this.stealersOffset = this.targetsOffset + 1 + maxPlayers;
+		// The killer steals up to 3 cards and everyone else alive steals 1.
+		this.deathOrderOffset = this.stealersOffset + 1 + maxPlayers + 1;
+		this.deckOffset = this.deathOrderOffset + maxPlayers;
+		this.seatsOffset = this.deckOffset + MAX_DECK_CARDS;
+		this.recordBytes = this.seatsOffset + maxPlayers * SEAT_BYTES;
+
+		this.chunks = new ByteBuffer[0];
+		this.numSlots = 0;
+		this.freeSlots = new int[16];
+		this.numFreeSlots = 0;
+	}
+
+	public int getMaxPlayers() {
+		return this.maxPlayers;
+	}
+
+	public int getRecordBytes() {
+		return this.recordBytes;
+	}
+
+	// The direct memory taken by every chunk so far, in use or not.
+	public long getReservedBytes() {
+		return (long)this.chunks.length * SLOTS_PER_CHUNK * this.recordBytes;
+	}
+
+	// Throws an IllegalArgumentException if this player could never be parked.
+	public static void checkSeat(String name, Strategy strategy) {
+		if (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES) {
+			throw new IllegalArgumentException("Names can be at most " + MAX_NAME_BYTES + " bytes long: " + name);
+		}
+		if (strategy != null && strategyCode(strategy) == 0) {
+			throw new IllegalArgumentException("This bot can't be parked, because it would come back as a different bot: " + strategy.getName() + " (" + strategy.getClass().getName() + ")");
+		}
+	}
+
+	public synchronized int allocate() {
+		if (this.numFreeSlots > 0) {
+			this.numFreeSlots--;
+			return this.freeSlots[this.numFreeSlots];
+		}
+		if (this.numSlots == this.chunks.length * SLOTS_PER_CHUNK) {
+			ByteBuffer[] chunks = new ByteBuffer[this.chunks.length + 1];
+			System.arraycopy(this.chunks, 0, chunks, 0, this.chunks.length);
+			chunks[this.chunks.length] = ByteBuffer.allocateDirect(SLOTS_PER_CHUNK * this.recordBytes);
+			this.chunks = chunks;
+		}
+		return this.numSlots++;
+	}
+
+	public synchronized void free(int slot) {
+		if (this.numFreeSlots == this.freeSlots.length) {
+			int[] freeSlots = new int[this.freeSlots.length * 2];
+			System.arraycopy(this.freeSlots, 0, freeSlots, 0, this.numFreeSlots);
+			this.freeSlots = freeSlots;
+		}
+		this.freeSlots[this.numFreeSlots++] = slot;
+	}
+
+	// Writes the flow into the slot. Only a game made with a seed can be parked, since
+	// other generators can't be saved.
+	public void park(int slot, GameFlow flow) {
+		ByteBuffer buffer = this.chunks[slot / SLOTS_PER_CHUNK];
+		int base = (slot % SLOTS_PER_CHUNK) * this.recordBytes;
+		Game game = flow.getGame();
+
+		// Players still in the game come first, in order, then the ones who have left it.
+		ArrayList<Player> seats = new ArrayList<Player>(game.getPlayers());
+		for (Player player : game.getDeathOrder()) {
+			if (!seats.contains(player)) {
+				seats.add(player);
+			}
+		}
+		ArrayList<Card> deckCards = game.getDeck().getUndrawnCards();
+		if (seats.size() > this.maxPlayers) {
+			throw new IllegalArgumentException("This arena only has room for " + this.maxPlayers + " players.");
+		}
+		if (deckCards.size() > MAX_DECK_CARDS) {
+			throw new IllegalArgumentException("This arena only has room for " + MAX_DECK_CARDS + " cards in the deck.");
+		}
+		if (!(game.getDeck().getRandom() instanceof GameRandom) || !(game.getRandom() instanceof GameRandom)) {
+			throw new IllegalArgumentException("Only a game made with a seed can be parked.");
+		}
+
+		buffer.put(base + STATE, (byte)flow.getState());
+		buffer.put(base + NUM_SEATS, (byte)seats.size());
+		buffer.put(base + NUM_IN_PLAYERS, (byte)game.getPlayers().size());
+		buffer.put(base + TURN_IDX, (byte)flow.getTurnIdx());
+		buffer.putInt(base + DECISION_NUMBER, flow.getDecisionNumber());
+		buffer.putInt(base + ROUND, flow.getRound());
+		buffer.put(base + PLAYER, (byte)seatOf(seats, flow.getCurrentPlayer()));
+		buffer.put(base + VICTIM, (byte)seatOf(seats, flow.getVictim()));
+		buffer.put(base + ATTACK_VALUE, (byte)((flow.getAttackCard() == null) ? 0 : flow.getAttackCard().getValue()));
+		buffer.put(base + STEAL_SUIT, (byte)((flow.getStealSuit() == null) ? -1 : CardDeck.suitIndex(flow.getStealSuit())));
+		buffer.put(base + KILLER_STEALS, (byte)flow.getKillerSteals());
+		buffer.put(base + STEAL_IDX, (byte)flow.getStealIdx());
+		buffer.putLong(base + DECK_STATE, ((GameRandom)game.getDeck().getRandom()).getState());
+		buffer.putLong(base + BOT_STATE, ((GameRandom)game.getRandom()).getState());
+		putSeats(buffer, base + TURN_ORDER, flow.getTurnOrder(), seats);
+		putSeats(buffer, base + this.targetsOffset, flow.getTargets(), seats);
+		putSeats(buffer, base + this.stealersOffset, flow.getStealers(), seats);
+
+		buffer.put(base + NUM_DEATHS, (byte)game.getDeathOrder().size());
+		for (int idx = 0; idx < game.getDeathOrder().size(); idx++) {
+			buffer.put(base + this.deathOrderOffset + idx, (byte)seatOf(seats, game.getDeathOrder().get(idx)));
+		}
+		buffer.put(base + NUM_DECK_CARDS, (byte)deckCards.size());
+		for (int idx = 0; idx < deckCards.size(); idx++) {
+			Card card = deckCards.get(idx);
+			buffer.put(base + this.deckOffset + idx, (byte)(CardDeck.suitIndex(card.getSuit()) * 16 + card.getValue()));
+		}
+
+		for (int seat = 0; seat < seats.size(); seat++) {
+			putSeat(buffer, base + this.seatsOffset + seat * SEAT_BYTES, seats.get(seat));
+		}
+	}
+
+	// Builds a new game and flow from the slot, exactly where they were parked. The
+	// slot is left as it is, so loading it again gives another copy of the same game.
+	public GameFlow load(int slot) {
+		ByteBuffer buffer = this.chunks[slot / SLOTS_PER_CHUNK];
+		int base = (slot % SLOTS_PER_CHUNK) * this.recordBytes;
+
+		GameRandom deckRandom = new GameRandom(0);
+		deckRandom.setState(buffer.getLong(base + DECK_STATE));
+		CardDeck deck = new CardDeck(0, deckRandom);
+		int numDeckCards = buffer.get(base + NUM_DECK_CARDS) & 0xFF;
+		for (int idx = 0; idx < numDeckCards; idx++) {
+			int code = buffer.get(base + this.deckOffset + idx);
+			deck.addCard(new Card(code % 16, CardDeck.SUITS[code / 16]));
+		}
+		GameRandom botRandom = new GameRandom(0);
+		botRandom.setState(buffer.getLong(base + BOT_STATE));
+		Game game = new Game(deck, botRandom);
+
+		int numSeats = buffer.get(base + NUM_SEATS);
+		int numInPlayers = buffer.get(base + NUM_IN_PLAYERS);
+		Player[] seats = new Player[numSeats];
+		for (int seat = 0; seat < numSeats; seat++) {
+			seats[seat] = getSeat(buffer, base + this.seatsOffset + seat * SEAT_BYTES, game);
+			if (seat < numInPlayers) {
+				game.getPlayers().add(seats[seat]);
+			}
+		}
+		int numDeaths = buffer.get(base + NUM_DEATHS);
+		for (int idx = 0; idx < numDeaths; idx++) {
+			game.getDeathOrder().add(seats[buffer.get(base + this.deathOrderOffset + idx)]);
+		}
+
+		// Until the target is picked, the attack card is still in the attacker's hand, and
+		// it has to be that very card for it to be spent.
+		Player player = seatAt(seats, buffer.get(base + PLAYER));
+		int state = buffer.get(base + STATE);
+		int attackValue = buffer.get(base + ATTACK_VALUE);
+		Card attackCard = null;
+		if (state == GameFlow.CHOOSE_TARGET) {
+			for (Card card : player.getAttackCards()) {
+				if (card.getValue() == attackValue) {
+					attackCard = card;
+				}
+			}
+		}
+		else if (attackValue > 0) {
+			attackCard = new Card(attackValue, "CLUBS");
+		}
+		int stealSuit = buffer.get(base + STEAL_SUIT);
+		GameFlow flow = new GameFlow(game);
+		flow.restore(
+			state,
+			buffer.getInt(base + DECISION_NUMBER),
+			buffer.getInt(base + ROUND),
+			getSeats(buffer, base + TURN_ORDER, seats),
+			buffer.get(base + TURN_IDX),
+			player,
+			attackCard,
+			getSeats(buffer, base + this.targetsOffset, seats),
+			seatAt(seats, buffer.get(base + VICTIM)),
+			getSeats(buffer, base + this.stealersOffset, seats),
+			buffer.get(base + KILLER_STEALS),
+			buffer.get(base + STEAL_IDX),
+			(stealSuit < 0) ? null : CardDeck.SUITS[stealSuit]);
+		return flow;
+	}
+
+	private static void putSeat(ByteBuffer buffer, int base, Player player) {
+		byte[] name = player.getName().getBytes(StandardCharsets.UTF_8);
+		buffer.put(base + NAME, (byte)name.length);
+		for (int idx = 0; idx < name.length; idx++) {
+			buffer.put(base + NAME + 1 + idx, name[idx]);
+		}
+		int strategyCode = 0;
+		if (player.getStrategy() != null) {
+			strategyCode = strategyCode(player.getStrategy());
+			if (strategyCode == 0) {
+				throw new IllegalArgumentException("This bot can't be parked: " + player.getName());
+			}
+		}
+		buffer.put(base + STRATEGY, (byte)strategyCode);
+		buffer.put(base + DEAD, (byte)(player.getDead() ? 1 : 0));
+		buffer.putShort(base + HEALTH, (short)player.getHealth());
+		buffer.putShort(base + SPEED, (short)player.getSpeed());
+		buffer.putShort(base + KILLS, (short)player.getKills());
+		buffer.putShort(base + CARDS_STOLEN, (short)player.getCardsStolen());
+		buffer.putShort(base + HEALTH_AT_DEATH, (short)player.getHealthAtDeath());
+		TurnClock clock = player.getClock();
+		buffer.put(base + HAS_CLOCK, (byte)((clock == null) ? 0 : 1));
+		if (clock != null) {
+			buffer.putLong(base + DECISION_MILLIS, clock.getDecisionMillis());
+			buffer.putLong(base + REMAINING_GAME_MILLIS, clock.getRemainingGameMillis());
+		}
+		putHand(buffer, base + ATTACK_CARDS, player.getAttackCards());
+		putHand(buffer, base + DEFENSE_CARDS, player.getDefenseCards());
+	}
+
+	private static Player getSeat(ByteBuffer buffer, int base, Game game) {
+		byte[] name = new byte[buffer.get(base + NAME)];
+		for (int idx = 0; idx < name.length; idx++) {
+			name[idx] = buffer.get(base + NAME + 1 + idx);
+		}
+		int strategyCode = buffer.get(base + STRATEGY);
+		Player player = new Player(new String(name, StandardCharsets.UTF_8), game, (strategyCode == 0) ? null : STRATEGIES[strategyCode - 1]);
+		player.restore(buffer.getShort(base + HEALTH), buffer.getShort(base + SPEED), buffer.get(base + DEAD) == 1, buffer.getShort(base + KILLS), buffer.getShort(base + CARDS_STOLEN), buffer.getShort(base + HEALTH_AT_DEATH));
+		if (buffer.get(base + HAS_CLOCK) == 1) {
+			player.setClock(new TurnClock(buffer.getLong(base + DECISION_MILLIS), buffer.getLong(base + REMAINING_GAME_MILLIS)));
+		}
+		getHand(buffer, base + ATTACK_CARDS, player.getAttackCards(), "CLUBS");
+		getHand(buffer, base + DEFENSE_CARDS, player.getDefenseCards(), "DIAMONDS");
+		return player;
+	}
+
+	private static void putHand(ByteBuffer buffer, int pos, ArrayList<Card> cards) {
+		if (cards.size() > MAX_HAND_CARDS) {
+			throw new IllegalArgumentException("A hand can have at most " + MAX_HAND_CARDS + " cards of a suit.");
+		}
+		buffer.put(pos, (byte)cards.size());
+		for (int idx = 0; idx < cards.size(); idx++) {
+			buffer.put(pos + 1 + idx, (byte)cards.get(idx).getValue());
+		}
+	}
+
+	private static void getHand(ByteBuffer buffer, int pos, ArrayList<Card> cards, String suit) {
+		int numCards = buffer.get(pos);
+		for (int idx = 0; idx < numCards; idx++) {
+			cards.add(new Card(buffer.get(pos + 1 + idx), suit));
+		}
+	}
+
+	// A list of players as a count followed by seat numbers. A count of NO_SEAT means null.
+	private static void putSeats(ByteBuffer buffer, int pos, ArrayList<Player> players, ArrayList<Player> seats) {
+		if (players == null) {
+			buffer.put(pos, (byte)NO_SEAT);
+			return;
+		}
+		buffer.put(pos, (byte)players.size());
+		for (int idx = 0; idx < players.size(); idx++) {
+			buffer.put(pos + 1 + idx, (byte)seats.indexOf(players.get(idx)));
+		}
+	}
+
+	private static ArrayList<Player> getSeats(ByteBuffer buffer, int pos, Player[] seats) {
+		int count = buffer.get(pos) & 0xFF;
+		if (count == NO_SEAT) {
+			return null;
+		}
+		ArrayList<Player> players = new ArrayList<Player>();
+		for (int idx = 0; idx < count; idx++) {
+			players.add(seats[buffer.get(pos + 1 + idx)]);
+		}
+		return players;
+	}
+
+	private static int seatOf(ArrayList<Player> seats, Player player) {
+		return (player == null) ? NO_SEAT : seats.indexOf(player);
+	}
+
+	private static Player seatAt(Player[] seats, byte seat) {
+		return ((seat & 0xFF) == NO_SEAT) ? null : seats[seat];
+	}
+
+	// The code a bot is stored under, or 0 if none of STRATEGIES plays exactly like it.
+	// Names don't count, since a wrapper or a trained bot keeps its bot's name.
+	private static int strategyCode(Strategy strategy) {
+		for (int idx = 0; idx < STRATEGIES.length; idx++) {
+			Strategy rebuilt = STRATEGIES[idx];
+			if (strategy.getClass() != rebuilt.getClass()) {
+				continue;
+			}
+			if (strategy instanceof LearnedStrategy && !Arrays.equals(((LearnedStrategy)strategy).getWeights(), ((LearnedStrategy)rebuilt).getWeights())) {
+				continue;
+			}
+			return idx + 1;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,90 @@
+// One slot of the GameEventBus ring. Slots are allocated once and overwritten in place,
+// so a handler must copy anything it wants to keep after onEvent returns.
+class GameEvent {
+	public static final int CARD_DRAWN = 1;
+	public static final int ATTACK_COMPLETED = 2;
+	public static final int HEALTH_LOST = 3;
+	public static final int PLAYER_DIED = 4;
+	public static final int CARD_REMOVED = 5;
+
+	// CARD_DRAWN: player drew card.
+	// ATTACK_COMPLETED: player attacked otherPlayer, value is the attack and otherValue the defense.
+	// HEALTH_LOST: player lost value health and has otherValue left.
+	// PLAYER_DIED: player was killed by otherPlayer with value stealable cards left.
+	// CARD_REMOVED: card was taken out of player's hand.
+	private long sequence;
+	private int type;
+	private Game game;
+	private Player player;
+	private Player otherPlayer;
+	private Card card;
+	private int value;
+	private int otherValue;
+
+	void set(long sequence, int type, Game game, Player player, Player otherPlayer, Card card, int value, int otherValue) {
+		this.sequence = sequence;
+		this.type = type;
+		this.game = game;
+		this.player = player;
+		this.otherPlayer = otherPlayer;
+		this.card = card;
+		this.value = value;
+		this.otherValue = otherValue;
+	}
+
+	void copyFrom(GameEvent other) {
+		set(other.sequence, other.type, other.game, other.player, other.otherPlayer, other.card, other.value, other.otherValue);
+	}
+
+	public long getSequence() {
+		return this.sequence;
+	}
+
+	public int getType() {
+		return this.type;
+	}
+
+	public Game getGame() {
+		return this.game;
+	}
+
+	public Player getPlayer() {
+		return this.player;
+	}
+
+	public Player getOtherPlayer() {
+		return this.otherPlayer;
+	}
+
+	public Card getCard() {
+		return this.card;
+	}
+
+	public int getValue() {
+		return this.value;
+	}
+
+	public int getOtherValue() {
+		return this.otherValue;
+	}
+
+	public String toString() {
+		String otherName = (this.otherPlayer == null) ? "" : this.otherPlayer.getName();
+		if (this.type == CARD_DRAWN) {
+			return this.player.getName() + " drew a " + this.card + ".";
+		}
+		else if (this.type == ATTACK_COMPLETED) {
+			return this.player.getName() + " attacked " + otherName + " with " + this.value + " against a defense of " + this.otherValue + ".";
+		}
+		else if (this.type == HEALTH_LOST) {
+			return this.player.getName() + " lost " + this.value + " health and has " + this.otherValue + " left.";
+		}
+		else if (this.type == PLAYER_DIED) {
+			return this.player.getName() + " was killed by " + otherName + ".";
+		}
+		else if (this.type == CARD_REMOVED) {
+			return this.player.getName() + " lost the " + this.card + ".";
+		}
+		return "Unknown event " + this.type + ".";
+	}
+}
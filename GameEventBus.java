@@ -0,0 +1,101 @@
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// A single-producer, multi-consumer ring buffer of game events. The game thread is the
+// only producer and never waits: it overwrites the oldest slot whether or not every
+// consumer has read it, and a consumer that falls a whole ring behind skips ahead and
+// counts what it lost. Publishing writes into a preallocated slot and allocates nothing.
+//
+// Each slot is guarded like a seqlock. The producer bumps "claimed" before it touches a
+// slot and "published" after, and a consumer copies a slot and then checks "claimed" to
+// make sure the slot wasn't reused while it was copying.
+class GameEventBus {
+	private GameEvent[] slots;
+	private int mask;
+	private AtomicLong claimed;
+	private AtomicLong published;
+	private long nextSequence;
+
+	// The capacity is rounded up to a power of two.
+	public GameEventBus(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		this.slots = new GameEvent[size];
+		for (int idx = 0; idx < size; idx++) {
+			this.slots[idx] = new GameEvent();
+		}
+		this.mask = size - 1;
+		this.claimed = new AtomicLong(-1);
+		this.published = new AtomicLong(-1);
+		this.nextSequence = 0;
+	}
+
+	public int getCapacity() {
+		return this.slots.length;
+	}
+
+	// Only the game thread may call this.
+	public void publish(int type, Game game, Player player, Player otherPlayer, Card card, int value, int otherValue) {
+		long sequence = this.nextSequence++;
+		this.claimed.set(sequence);
+		VarHandle.storeStoreFence();
+		this.slots[(int)(sequence & this.mask)].set(sequence, type, game, player, otherPlayer, card, value, otherValue);
+		this.published.lazySet(sequence);
+	}
+
+	public long getPublishedSequence() {
+		return this.published.get();
+	}
+
+	// Copies the slot for this sequence into target. Returns false if the producer had
+	// already started reusing the slot, in which case target holds garbage.
+	boolean copy(long sequence, GameEvent target) {
+		target.copyFrom(this.slots[(int)(sequence & this.mask)]);
+		VarHandle.loadLoadFence();
+		return sequence > this.claimed.get() - this.slots.length;
+	}
+
+	// The oldest sequence that is still safe to read.
+	long getOldestSequence() {
+		return Math.max(this.claimed.get() - this.slots.length + 1, 0);
+	}
+
+	interface WaitStrategy {
+		// Called each time a consumer finds nothing to read. idleCount is how many times
+		// in a row that has happened.
+		void idle(int idleCount);
+	}
+
+	// Lowest latency, but burns a whole core per consumer.
+	public static final WaitStrategy BUSY_SPIN = new WaitStrategy() {
+		public void idle(int idleCount) {
+			Thread.onSpinWait();
+		}
+	};
+
+	public static final WaitStrategy YIELDING = new WaitStrategy() {
+		public void idle(int idleCount) {
+			if (idleCount < 100) {
+				Thread.onSpinWait();
+			}
+			else {
+				Thread.yield();
+			}
+		}
+	};
+
+	// Backs off to sleeping, for consumers like logging where latency doesn't matter.
+	public static final WaitStrategy SLEEPING = new WaitStrategy() {
+		public void idle(int idleCount) {
+			if (idleCount < 100) {
+				Thread.onSpinWait();
+			}
+			else if (idleCount < 200) {
+				Thread.yield();
+			}
+			else {
+				LockSupport.parkNanos(1000000);
+			}
+		}
+	};
+}
@@ -0,0 +1,63 @@
+// Reads a GameEventBus at its own pace through a private sequence cursor. Either call
+// poll() from your own loop, or run the consumer on a thread of its own, where it waits
+// for new events with its WaitStrategy until stop() is called.
+class GameEventConsumer implements Runnable {
+	private GameEventBus bus;
+	private GameEventHandler handler;
+	private GameEventBus.WaitStrategy waitStrategy;
+	private GameEvent event;
+	private long nextSequence;
+	private long lostEvents;
+	private volatile boolean running;
+
+	public GameEventConsumer(GameEventBus bus, GameEventHandler handler, GameEventBus.WaitStrategy waitStrategy) {
+		this.bus = bus;
+		this.handler = handler;
+		this.waitStrategy = waitStrategy;
+		this.event = new GameEvent();
+		this.nextSequence = bus.getPublishedSequence() + 1;
+		this.lostEvents = 0;
+		this.running = true;
+	}
+
+	// Handles every event published so far and returns how many there were.
+	public int poll() {
+		long available = this.bus.getPublishedSequence();
+		int numHandled = 0;
+		while (this.nextSequence <= available) {
+			if (!this.bus.copy(this.nextSequence, this.event)) {
+				long oldest = this.bus.getOldestSequence();
+				this.lostEvents += oldest - this.nextSequence;
+				this.nextSequence = oldest;
+				continue;
+			}
+			this.handler.onEvent(this.event);
+			this.nextSequence++;
+			numHandled++;
+		}
+		return numHandled;
+	}
+
+	public void run() {
+		int idleCount = 0;
+		while (this.running) {
+			if (poll() > 0) {
+				idleCount = 0;
+			}
+			else {
+				this.waitStrategy.idle(idleCount);
+				idleCount++;
+			}
+		}
+		poll();
+	}
+
+	public void stop() {
+		this.running = false;
+	}
+
+	// How many events were overwritten before this consumer could read them.
+	public long getLostEvents() {
+		return this.lostEvents;
+	}
+}
@@ -0,0 +1,4 @@
+interface GameEventHandler {
+	// The event is only valid until this returns.
+	void onEvent(GameEvent event);
+}
@@ -0,0 +1,45 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+// Writes every event published on a GameEventBus to a text file, one line per event, so a
+// game can be followed or replayed afterwards. It reads the bus on a thread of its own,
+// so the game never waits on the disk.
+class GameEventLog implements GameEventHandler {
+	private PrintWriter out;
+	private GameEventConsumer consumer;
+	private Thread thread;
+
+	public GameEventLog(GameEventBus bus, File file) throws IOException {
+		this.out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+		this.consumer = new GameEventConsumer(bus, this, GameEventBus.SLEEPING);
+		this.thread = new Thread(this.consumer, "game-event-log");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	public void onEvent(GameEvent event) {
+		this.out.println(event.getSequence() + " " + event);
+	}
+
+	// Writes the events published so far and closes the file. Events the log fell too
+	// far behind to read are counted at the end.
+	public void close() throws IOException {
+		this.consumer.stop();
+		try {
+			this.thread.join();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		if (this.consumer.getLostEvents() > 0) {
+			this.out.println(this.consumer.getLostEvents() + " events were lost.");
+		}
+		this.out.close();
+		if (this.out.checkError()) {
+			throw new IOException("Could not write the event log.");
+		}
+	}
+}
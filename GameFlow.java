@@ -0,0 +1,700 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+// The play phase as a state machine. Rather than a chain of calls that blocks until
+// every player involved in an attack has answered, the flow runs until somebody has to
+// decide something, remembers where it stopped in its fields and returns. Whoever hosts
+// the game hands it the answer with submit() when it arrives, on any thread, so a game
+// waiting on a person holds no thread. Bots are asked straight away and never make the
+// flow wait. Messages pile up in an output buffer until the host takes them. A game
+// of bots alone plays out entirely inside start(), which is how Game.playHeadless runs.
+class GameFlow {
+	public static final int CHOOSE_ACTION = 1;
+	public static final int CHOOSE_ATTACK_CARD = 2;
+	public static final int CHOOSE_TARGET = 3;
+	public static final int CHOOSE_DEFENSE = 4;
+	public static final int CHOOSE_STEAL_SUIT = 5;
+	public static final int CHOOSE_STEAL_CARD = 6;
+	public static final int GAME_OVER = 7;
+
+	// A game where only bots are left stops after this many more rounds without a winner.
+	public static final int MAX_BOT_ROUNDS = Tournament.MAX_ROUNDS;
+
+	private Game game;
+	private int state;
+	private int decisionNumber;
+	private StringBuilder output;
+	private boolean quiet;
+	private int maxBotRounds;
+
+	private ArrayList<Player> turnOrder;
+	private int turnIdx;
+	private int round;
+	private Player player;
+
+	// The round in which the last person left the game, or -1 while people are playing.
+	// A parked flow is always waiting on a person, so this never needs restoring.
+	private int botsOnlySince;
+
+	private Card attackCard;
+	private ArrayList<Player> targets;
+	private Player victim;
+
+	// Everyone who gets to steal from the victim, one entry per card, killer first.
+	private ArrayList<Player> stealers;
+	private int killerSteals;
+	private int stealIdx;
+	private String stealSuit;
+
+	public GameFlow(Game game) {
+		this.game = game;
+		this.output = new StringBuilder();
+		this.round = 0;
+		this.maxBotRounds = MAX_BOT_ROUNDS;
+		this.botsOnlySince = -1;
+	}
+
+	// A quiet flow keeps nothing in its output, for games nobody is watching.
+	public void setQuiet(boolean quiet) {
+		this.quiet = quiet;
+	}
+
+	public void setMaxBotRounds(int maxBotRounds) {
+		this.maxBotRounds = maxBotRounds;
+	}
+
+	// Starts the first round. Every player should have drawn their initial cards already.
+	public void start() {
+		say("Starting play phase. Have fun!\n\n");
+		startRound();
+		runBots();
+	}
+
+	public Game getGame() {
+		return this.game;
+	}
+
+	public int getState() {
+		return this.state;
+	}
+
+	public boolean isOver() {
+		return this.state == GAME_OVER;
+	}
+
+	// Goes up by one every time the flow starts waiting on a new decision, so a host can
+	// tell whether a timeout it scheduled is still about the decision it was meant for.
+	public int getDecisionNumber() {
+		return this.decisionNumber;
+	}
+
+	// The player whose turn it is.
+	public Player getCurrentPlayer() {
+		return this.player;
+	}
+
+	// The card being attacked with, from CHOOSE_TARGET until the attack is resolved.
+	public Card getAttackCard() {
+		return this.attackCard;
+	}
+
+	// The enemies listed in CHOOSE_TARGET, in the order they are numbered.
+	public ArrayList<Player> getTargets() {
+		return this.targets;
+	}
+
+	// The player being attacked, or the dead player whose cards are being stolen.
+	public Player getVictim() {
+		return this.victim;
+	}
+
+	// The suit picked in CHOOSE_STEAL_SUIT.
+	public String getStealSuit() {
+		return this.stealSuit;
+	}
+
+	public int getRound() {
+		return this.round;
+	}
+
+	public ArrayList<Player> getTurnOrder() {
+		return this.turnOrder;
+	}
+
+	public int getTurnIdx() {
+		return this.turnIdx;
+	}
+
+	// Everyone stealing from the victim, one entry per card, from CHOOSE_STEAL_SUIT until
+	// the last card is stolen.
+	public ArrayList<Player> getStealers() {
+		return this.stealers;
+	}
+
+	public int getKillerSteals() {
+		return this.killerSteals;
+	}
+
+	public int getStealIdx() {
+		return this.stealIdx;
+	}
+
+	// Puts a flow restored by a GameArena back where it was parked, instead of start().
+	public void restore(int state, int decisionNumber, int round, ArrayList<Player> turnOrder, int turnIdx, Player player, Card attackCard, ArrayList<Player> targets, Player victim, ArrayList<Player> stealers, int killerSteals, int stealIdx, String stealSuit) {
+		this.state = state;
+		this.decisionNumber = decisionNumber;
+		this.round = round;
+		this.turnOrder = turnOrder;
+		this.turnIdx = turnIdx;
+		this.player = player;
+		this.attackCard = attackCard;
+		this.targets = targets;
+		this.victim = victim;
+		this.stealers = stealers;
+		this.killerSteals = killerSteals;
+		this.stealIdx = stealIdx;
+		this.stealSuit = stealSuit;
+	}
+
+	// The winner, or null if the game isn't over or the bots ran out of rounds.
+	public Player getWinner() {
+		ArrayList<Player> alivePlayers = this.game.getAlivePlayers();
+		if (isOver() && alivePlayers.size() == 1) {
+			return alivePlayers.get(0);
+		}
+		return null;
+	}
+
+	// The player the flow is waiting on, or null once the game is over.
+	public Player getWaitingPlayer() {
+		if (this.state == CHOOSE_ACTION || this.state == CHOOSE_ATTACK_CARD || this.state == CHOOSE_TARGET) {
+			return this.player;
+		}
+		else if (this.state == CHOOSE_DEFENSE) {
+			return this.victim;
+		}
+		else if (this.state == CHOOSE_STEAL_SUIT || this.state == CHOOSE_STEAL_CARD) {
+			return this.stealers.get(this.stealIdx);
+		}
+		return null;
+	}
+
+	// Returns everything that has happened since the last call and empties the buffer.
+	public String takeOutput() {
+		String text = this.output.toString();
+		this.output.setLength(0);
+		return text;
+	}
+
+	// Everything the waiting player needs to see to make the current decision. Only
+	// they should see it, since it shows their cards.
+	public String getPrompt() {
+		StringBuilder out = new StringBuilder();
+		Player waiting = getWaitingPlayer();
+		if (this.state == CHOOSE_ACTION) {
+			out.append("You are " + waiting.getName() + ".\n");
+			waiting.appendStats(out);
+			out.append("\n");
+			waiting.appendDrawOdds(out);
+			out.append("\n");
+			waiting.appendClock(out);
+			appendThreats(out, waiting);
+			out.append("What would you like to do?\n");
+			out.append("1. Attack a player\n");
+			out.append("2. Draw a card\n");
+			out.append("3. Finish turn\n");
+		}
+		else if (this.state == CHOOSE_ATTACK_CARD) {
+			out.append("You have these attack cards: " + joinValues(waiting.getAttackCards()) + "\n");
+			out.append("Which card would you like to attack with? (enter 'q' to cancel)\n");
+		}
+		else if (this.state == CHOOSE_TARGET) {
+			out.append("You are attacking with a value of " + this.attackCard.getValue() + ".\n");
+			out.append("Who would you like to attack? (enter 'q' to cancel)\n");
+			ThreatIndex threats = this.game.getThreatIndex();
+			for (int idx = 0; idx < this.targets.size(); idx++) {
+				Player target = this.targets.get(idx);
+				out.append((idx + 1) + ". " + target.getName());
+				if (threats != null && threats.getLethalValue(target) <= this.attackCard.getValue()) {
+					out.append(" (this attack kills them whatever they defend with)");
+				}
+				out.append("\n");
+			}
+		}
+		else if (this.state == CHOOSE_DEFENSE) {
+			out.append("You are " + waiting.getName() + ".\n");
+			out.append(this.player.getName() + " is attacking you with a value of " + this.attackCard.getValue() + "!\n");
+			waiting.appendStats(out);
+			out.append("\n");
+			out.append("You have these defense cards: " + joinValues(waiting.getDefenseCards()) + "\n");
+			out.append("Which card would you like to defend with? (enter 'x' to use no defense card)\n");
+		}
+		else if (this.state == CHOOSE_STEAL_SUIT) {
+			this.victim.appendStealableCards(out);
+			out.append("\n");
+			if (this.stealIdx >= this.killerSteals || this.killerSteals == 1) {
+				out.append(waiting.getName() + ", choose the suit of your card:\n");
+			}
+			else {
+				String[] ordinals = {"first", "second", "third"};
+				out.append(waiting.getName() + ", choose the suit of your " + ordinals[this.stealIdx] + " card:\n");
+			}
+			out.append("1. CLUBS (attack)\n");
+			out.append("2. DIAMONDS (defense)\n");
+		}
+		else if (this.state == CHOOSE_STEAL_CARD) {
+			if (this.stealSuit.equals("CLUBS")) {
+				out.append(this.victim.getName() + " has these attack cards: " + joinValues(this.victim.getAttackCards()) + "\n");
+			}
+			else {
+				out.append(this.victim.getName() + " has these defense cards: " + joinValues(this.victim.getDefenseCards()) + "\n");
+			}
+			out.append("Which value will you steal?\n");
+		}
+		return out.toString();
+	}
+
+	// Hints from the game's ThreatIndex, if it has one.
+	private void appendThreats(StringBuilder out, Player waiting) {
+		ThreatIndex threats = this.game.getThreatIndex();
+		if (threats == null) {
+			return;
+		}
+		Player killable = threats.getKillableEnemy(waiting);
+		if (killable != null) {
+			out.append("Your best attack card can kill " + killable.getName() + " whatever they defend with.\n");
+		}
+		if (threats.isInDanger(waiting)) {
+			out.append("Watch out: " + threats.getBiggestThreat(waiting).getName() + " has an attack card that can kill you.\n");
+		}
+		if (killable != null || threats.isInDanger(waiting)) {
+			out.append("\n");
+		}
+	}
+
+	// Applies the waiting player's answer, then runs the game on until a person has to
+	// decide something again. An answer that doesn't make sense leaves the flow waiting
+	// on the same decision with an explanation in the output.
+	public void submit(String input) {
+		if (isOver()) {
+			throw new IllegalStateException("The game is over.");
+		}
+		String inp = input.trim().toLowerCase();
+		if (this.state == CHOOSE_ACTION) {
+			chooseAction(inp);
+		}
+		else if (this.state == CHOOSE_ATTACK_CARD) {
+			chooseAttackCard(inp);
+		}
+		else if (this.state == CHOOSE_TARGET) {
+			chooseTarget(inp);
+		}
+		else if (this.state == CHOOSE_DEFENSE) {
+			chooseDefense(inp);
+		}
+		else if (this.state == CHOOSE_STEAL_SUIT) {
+			chooseStealSuit(inp);
+		}
+		else if (this.state == CHOOSE_STEAL_CARD) {
+			chooseStealCard(inp);
+		}
+		runBots();
+	}
+
+	// Makes the default choice for a player whose clock ran out: they finish their turn,
+	// don't defend, or take the victim's highest card.
+	public void timeOut() {
+		if (isOver()) {
+			throw new IllegalStateException("The game is over.");
+		}
+		Player waiting = getWaitingPlayer();
+		if (this.state == CHOOSE_DEFENSE) {
+			say("Time is up. " + waiting.getName() + " will not use a defense card.\n");
+			finishAttack(null);
+		}
+		else if (this.state == CHOOSE_STEAL_SUIT || this.state == CHOOSE_STEAL_CARD) {
+			say("Time is up. " + waiting.getName() + " takes " + this.victim.getName() + "'s highest card.\n");
+			steal(this.victim.getHighestStealableCard());
+		}
+		else {
+			say("Time is up. " + waiting.getName() + " finishes their turn.\n");
+			endTurn();
+		}
+		runBots();
+	}
+
+	private void await(int state) {
+		this.state = state;
+		this.decisionNumber++;
+	}
+
+	private void startRound() {
+		// Players who died last round leave the turn order for good.
+		for (Player player : new ArrayList<Player>(this.game.getPlayers())) {
+			if (player.getDead()) {
+				this.game.getPlayers().remove(player);
+			}
+		}
+		boolean anyPeople = false;
+		for (Player player : this.game.getPlayers()) {
+			anyPeople = anyPeople || player.getStrategy() == null;
+		}
+		if (!anyPeople && this.botsOnlySince < 0) {
+			this.botsOnlySince = this.round;
+		}
+		if (!anyPeople && this.round - this.botsOnlySince >= this.maxBotRounds) {
+			say("Nobody has won after " + this.maxBotRounds + " rounds of bots alone, so the game is over.\n");
+			endGame();
+			return;
+		}
+		this.round++;
+
+		Collections.sort(this.game.getPlayers());
+		if (!this.quiet) {
+			say("The turn order is based on the speed stat. The turn order this round is:\n");
+			say("\t" + String.join(", ", this.game.getPlayerNames()) + "\n\n");
+		}
+		this.turnOrder = new ArrayList<Player>(this.game.getPlayers());
+		this.turnIdx = 0;
+		startTurn();
+	}
+
+	private void startTurn() {
+		while (this.turnIdx < this.turnOrder.size() && this.turnOrder.get(this.turnIdx).getDead()) {
+			this.turnIdx++;
+		}
+		if (this.turnIdx == this.turnOrder.size()) {
+			say("The round is over.\n\n");
+			startRound();
+			return;
+		}
+		this.player = this.turnOrder.get(this.turnIdx);
+		say("It is " + this.player.getName() + "'s turn.\n");
+		await(CHOOSE_ACTION);
+	}
+
+	private void endTurn() {
+		this.attackCard = null;
+		this.targets = null;
+		this.victim = null;
+		this.stealers = null;
+		if (this.game.getAlivePlayers().size() == 1) {
+			say("The game is over.\n");
+			say("The winner is: " + this.game.getAlivePlayers().get(0).getName() + "\n");
+			endGame();
+			return;
+		}
+		this.turnIdx++;
+		startTurn();
+	}
+
+	private void endGame() {
+		this.state = GAME_OVER;
+		this.decisionNumber++;
+		try {
+			this.game.recordResults();
+		}
+		catch (IOException ex) {
+			if (this.quiet) {
+				System.err.println("Could not save the stats from this game: " + ex.getMessage());
+			}
+			else {
+				say("Could not save the stats from this game: " + ex.getMessage() + "\n");
+			}
+		}
+	}
+
+	private void chooseAction(String inp) {
+		if (inp.equals("1")) {
+			if (this.player.getAttackCards().size() == 0) {
+				say("You have no attack cards. You can not attack.\n\n");
+			}
+			else {
+				await(CHOOSE_ATTACK_CARD);
+			}
+		}
+		else if (inp.equals("2")) {
+			if (this.game.getDeck().getNumCards() == 0) {
+				say("The deck has no cards, so you cannot draw one.\n\n");
+			}
+			else {
+				say("You will now draw one card.\n");
+				this.player.drawCards(1, this.output);
+				say("You are finished drawing cards.\n\n");
+				this.player.appendStats(this.output);
+				endTurn();
+			}
+		}
+		else if (inp.equals("3")) {
+			say("Finishing turn.\n");
+			endTurn();
+		}
+		else if (!inp.equals("")) {
+			say("Invalid input.\n");
+		}
+	}
+
+	private void chooseAttackCard(String inp) {
+		if (inp.equals("q")) {
+			await(CHOOSE_ACTION);
+			return;
+		}
+		Card card = findCard(this.player.getAttackCards(), inp, "You don't have that card.");
+		if (card != null) {
+			this.attackCard = card;
+			this.targets = this.player.getEnemies();
+			await(CHOOSE_TARGET);
+		}
+	}
+
+	private void chooseTarget(String inp) {
+		if (inp.equals("q")) {
+			this.attackCard = null;
+			await(CHOOSE_ACTION);
+			return;
+		}
+		if (inp.equals("")) {
+			return;
+		}
+		int inpNum = -1;
+		try {
+			inpNum = Integer.parseInt(inp);
+		}
+		catch (NumberFormatException ex) {}
+		if (inpNum > 0 && inpNum <= this.targets.size()) {
+			beginAttack(this.attackCard, this.targets.get(inpNum - 1));
+		}
+		else {
+			say("Invalid input.\n");
+		}
+	}
+
+	private void chooseDefense(String inp) {
+		if (inp.equals("x")) {
+			finishAttack(null);
+			return;
+		}
+		Card card = findCard(this.victim.getDefenseCards(), inp, "You don't have that card.");
+		if (card != null) {
+			finishAttack(card);
+		}
+	}
+
+	private void chooseStealSuit(String inp) {
+		if (inp.equals("1")) {
+			if (this.victim.getAttackCards().size() == 0) {
+				say(this.victim.getName() + " has no attack cards. Choose another suit.\n");
+			}
+			else {
+				this.stealSuit = "CLUBS";
+				await(CHOOSE_STEAL_CARD);
+			}
+		}
+		else if (inp.equals("2")) {
+			if (this.victim.getDefenseCards().size() == 0) {
+				say(this.victim.getName() + " has no defense cards. Choose another suit.\n");
+			}
+			else {
+				this.stealSuit = "DIAMONDS";
+				await(CHOOSE_STEAL_CARD);
+			}
+		}
+		else if (!inp.equals("")) {
+			say("Invalid input.\n");
+		}
+	}
+
+	private void chooseStealCard(String inp) {
+		ArrayList<Card> cards = this.stealSuit.equals("CLUBS") ? this.victim.getAttackCards() : this.victim.getDefenseCards();
+		Card card = findCard(cards, inp, this.victim.getName() + " doesn't have that card.");
+		if (card != null) {
+			steal(card);
+		}
+	}
+
+	// The attack card is spent as soon as the attack is announced.
+	private void beginAttack(Card card, Player target) {
+		this.player.spendCard(card);
+		this.attackCard = card;
+		this.victim = target;
+		say(this.player.getName() + " is attacking " + target.getName() + " with a value of " + card.getValue() + ".\n");
+		if (target.getDefenseCards().size() == 0) {
+			say(target.getName() + " has no defense cards and must endure the attack.\n");
+			finishAttack(null);
+		}
+		else {
+			await(CHOOSE_DEFENSE);
+		}
+	}
+
+	private void finishAttack(Card defenseCard) {
+		int attackValue = this.attackCard.getValue();
+		int defenseValue = 0;
+		if (defenseCard == null) {
+			say(this.victim.getName() + " did not defend.\n");
+		}
+		else {
+			defenseValue = defenseCard.getValue();
+			this.victim.spendCard(defenseCard);
+			say(this.victim.getName() + " defended with a value of " + defenseValue + ".\n");
+		}
+
+		boolean died = this.game.resolveAttack(this.player, this.victim, attackValue, defenseValue);
+		if (attackValue > defenseValue) {
+			int numHealthLost = attackValue - defenseValue;
+			say(this.player.getName() + "'s attack was successful.\n");
+			say(this.victim.getName() + " lost " + numHealthLost + " health " + ((numHealthLost > 1) ? "points" : "point") + ".\n");
+		}
+		else {
+			say(this.victim.getName() + "'s defense was successful.\n");
+		}
+
+		if (died) {
+			startStealing();
+		}
+		else {
+			endTurn();
+		}
+	}
+
+	// The killer steals up to 3 cards, then each other player steals 1 in speed order
+	// while there are cards left. Whatever is left goes back into the deck.
+	private void startStealing() {
+		say(this.victim.getName() + " died!\n\n");
+		int numCards = this.victim.getNumStealableCards();
+		if (numCards == 0) {
+			say(this.victim.getName() + " has no cards to steal.\n");
+			endTurn();
+			return;
+		}
+
+		this.killerSteals = Math.min(numCards, 3);
+		say(this.player.getName() + " gets to steal 3 attack or defense cards from " + this.victim.getName() + ".\n");
+		if (numCards < 3) {
+			String pluralized = (numCards > 1) ? "cards" : "card";
+			say(this.victim.getName() + " only has " + numCards + " " + pluralized + " so " + this.player.getName() + " only gets to steal " + numCards + " " + pluralized + ".\n");
+		}
+		this.stealers = new ArrayList<Player>();
+		for (int idx = 0; idx < this.killerSteals; idx++) {
+			this.stealers.add(this.player);
+		}
+		Collections.sort(this.game.getPlayers());
+		for (Player other : this.game.getAlivePlayers()) {
+			if (this.stealers.size() == numCards) {
+				break;
+			}
+			if (other != this.player) {
+				this.stealers.add(other);
+			}
+		}
+		this.stealIdx = 0;
+		await(CHOOSE_STEAL_SUIT);
+	}
+
+	private void steal(Card card) {
+		Player stealer = getWaitingPlayer();
+		stealer.stealCard(this.victim, card);
+		say(stealer.getName() + " stole the " + card.getValue() + " of " + card.getSuit() + " from " + this.victim.getName() + ".\n\n");
+		this.stealIdx++;
+
+		if (this.victim.getNumStealableCards() == 0) {
+			say(this.victim.getName() + " has no more cards.\n");
+			endTurn();
+		}
+		else if (this.stealIdx == this.stealers.size()) {
+			this.game.returnCardsToDeck(this.victim);
+			say("Everyone has stolen their cards.\n");
+			endTurn();
+		}
+		else {
+			if (this.stealIdx == this.killerSteals) {
+				say("Each other player, ordered by their speed stat, gets to steal 1 attack or defense card from " + this.victim.getName() + ".\n");
+			}
+			await(CHOOSE_STEAL_SUIT);
+		}
+	}
+
+	// Bots decide as soon as it is their turn to, so the flow only ever stops on people.
+	private void runBots() {
+		Player waiting = getWaitingPlayer();
+		while (waiting != null && waiting.getStrategy() != null) {
+			botStep(waiting);
+			waiting = getWaitingPlayer();
+		}
+	}
+
+	private void botStep(Player bot) {
+		Strategy strategy = bot.getStrategy();
+		if (this.state == CHOOSE_DEFENSE) {
+			Card defenseCard = null;
+			if (bot.getDefenseCards().size() > 0) {
+				defenseCard = strategy.chooseDefenseCard(bot, this.player, this.attackCard.getValue(), this.game);
+			}
+			finishAttack(defenseCard);
+			return;
+		}
+		if (this.state == CHOOSE_STEAL_SUIT || this.state == CHOOSE_STEAL_CARD) {
+			steal(strategy.chooseStolenCard(bot, this.victim, this.game));
+			return;
+		}
+
+		int action = strategy.chooseAction(bot, this.game);
+		if (action == Strategy.ATTACK && bot.getAttackCards().size() > 0) {
+			Card card = strategy.chooseAttackCard(bot, this.game);
+			Player target = (card == null) ? null : strategy.chooseTarget(bot, card, bot.getEnemies(), this.game);
+			if (target != null) {
+				beginAttack(card, target);
+				return;
+			}
+		}
+		else if (action == Strategy.DRAW && this.game.getDeck().getNumCards() > 0) {
+			bot.drawCards(1, null);
+			say(bot.getName() + " drew a card.\n");
+			endTurn();
+			return;
+		}
+		say(bot.getName() + " finished their turn.\n");
+		endTurn();
+	}
+
+	private void say(String text) {
+		if (!this.quiet) {
+			this.output.append(text);
+		}
+	}
+
+	// Returns the card with the value typed in, or null after saying what was wrong.
+	private Card findCard(ArrayList<Card> cards, String inp, String missingMessage) {
+		if (inp.equals("")) {
+			return null;
+		}
+		int value;
+		try {
+			value = Integer.parseInt(inp);
+		}
+		catch (NumberFormatException ex) {
+			say("Invalid input.\n");
+			return null;
+		}
+		for (Card card : cards) {
+			if (card.getValue() == value) {
+				return card;
+			}
+		}
+		say(missingMessage + "\n");
+		return null;
+	}
+
+	private static String joinValues(ArrayList<Card> cards) {
+		Collections.sort(cards);
+		StringBuilder out = new StringBuilder();
+		for (int idx = 0; idx < cards.size(); idx++) {
+			if (idx > 0) {
+				out.append(", ");
+			}
+			out.append(cards.get(idx).getValue());
+		}
+		return out.toString();
+	}
+}
@@ -0,0 +1,424 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hosts many games at once on a small pool of workers. A game waiting on a person is
+// parked in a GameArena, off the heap, so a parked game costs no thread and almost no
+// garbage collection work. When a decision arrives it is applied on whichever worker is
+// free while holding that game's lock: the game is loaded from the arena, the decision is
+// submitted to its GameFlow, and the game is parked again. That keeps the decisions for
+// one game in order and lets different games move at the same time. Players with a
+// TurnClock get their timeout from the shared HashedWheelTimer.
+class GameHost {
+	public static final int DEFAULT_MAX_PLAYERS = 6;
+
+	private ConcurrentHashMap<Long, HostedGame> games;
+	private ExecutorService workers;
+	private GameArena arena;
+	private AtomicLong nextGameId;
+	private long decisionMillis;
+	private long gameMillis;
+	private StatsStore statsStore;
+	private volatile boolean shutDown;
+
+	public GameHost(int numWorkers) {
+		this(numWorkers, DEFAULT_MAX_PLAYERS);
+	}
+
+	public GameHost(int numWorkers, int maxPlayers) {
+		this.games = new ConcurrentHashMap<Long, HostedGame>();
+		this.workers = Executors.newFixedThreadPool(numWorkers);
+		this.arena = new GameArena(maxPlayers);
+		this.nextGameId = new AtomicLong();
+	}
+
+	// People seated after this get a TurnClock, like Game.setTimeLimits.
+	public void setTimeLimits(long decisionMillis, long gameMillis) {
+		this.decisionMillis = decisionMillis;
+		this.gameMillis = gameMillis;
+	}
+
+	public void setStatsStore(StatsStore statsStore) {
+		this.statsStore = statsStore;
+	}
+
+	public int getNumGames() {
+		return this.games.size();
+	}
+
+	public GameArena getArena() {
+		return this.arena;
+	}
+
+	// Seats a person for each name, then the bots. Everyone draws their initial cards and
+	// the game runs until it first needs a person to decide. Returns the new game's id.
+	// Decisions are matched to people by name, so throws an IllegalArgumentException if
+	// two people or a person and a bot share a name, as well as if the game could not be
+	// parked: too many players, a name that is too long, or a bot the arena can't rebuild.
+	public long createGame(String[] names, Strategy[] bots, long seed) {
+		if (names.length + bots.length > this.arena.getMaxPlayers()) {
+			throw new IllegalArgumentException("A hosted game can have at most " + this.arena.getMaxPlayers() + " players.");
+		}
+		for (int idx = 0; idx < names.length; idx++) {
+			for (int other = 0; other < idx; other++) {
+				if (names[other].equals(names[idx])) {
+					throw new IllegalArgumentException("Two players can't both be called " + names[idx] + ".");
+				}
+			}
+			for (Strategy bot : bots) {
+				if (bot.getName().equals(names[idx])) {
+					throw new IllegalArgumentException("A bot is already called " + names[idx] + ".");
+				}
+			}
+		}
+		Game game = new Game(seed);
+		for (String name : names) {
+			GameArena.checkSeat(name, null);
+			Player player = new Player(name, game);
+			if (this.decisionMillis > 0) {
+				player.setClock(new TurnClock(this.decisionMillis, this.gameMillis));
+			}
+			game.getPlayers().add(player);
+		}
+		for (Strategy bot : bots) {
+			GameArena.checkSeat(bot.getName(), bot);
+			game.getPlayers().add(new Player(bot.getName(), game, bot));
+		}
+		game.setStatsStore(this.statsStore);
+		game.setThreatIndex(new ThreatIndex());
+		for (Player player : game.getPlayers()) {
+			player.drawCards(6, null);
+		}
+
+		long gameId = this.nextGameId.getAndIncrement();
+		HostedGame hosted = new HostedGame(gameId, this.arena.allocate());
+		synchronized (hosted) {
+			GameFlow flow = new GameFlow(game);
+			flow.start();
+			this.games.put(gameId, hosted);
+			park(hosted, flow);
+		}
+		return gameId;
+	}
+
+	// A copy of the game as it stands, or null once it is over. It is only for looking
+	// at: nothing done to it reaches the hosted game.
+	public GameFlow peek(long gameId) {
+		HostedGame hosted = this.games.get(gameId);
+		if (hosted == null) {
+			return null;
+		}
+		synchronized (hosted) {
+			return hosted.isOver() ? null : load(hosted);
+		}
+	}
+
+	// Whatever the game has said since the last reply, followed by its current prompt. A
+	// finished game is dropped once its last words have been taken.
+	public String takeText(long gameId) {
+		HostedGame hosted = this.games.get(gameId);
+		if (hosted == null) {
+			return "There is no such game.\n";
+		}
+		synchronized (hosted) {
+			if (hosted.isOver()) {
+				this.games.remove(gameId);
+				return hosted.takePendingText();
+			}
+			return hosted.takePendingText() + load(hosted).getPrompt();
+		}
+	}
+
+	// Drops a game whether or not it is over, giving back its slot.
+	public void removeGame(long gameId) {
+		HostedGame hosted = this.games.remove(gameId);
+		if (hosted == null) {
+			return;
+		}
+		synchronized (hosted) {
+			if (hosted.timeout != null) {
+				hosted.timeout.cancel();
+				hosted.timeout = null;
+			}
+			if (!hosted.isOver()) {
+				this.arena.free(hosted.slot);
+				hosted.slot = -1;
+			}
+		}
+	}
+
+	// Events from the game's next decision on are published on this bus. Decisions for
+	// one game are applied one at a time, so the bus has one producer at a time even
+	// though they run on different workers, but it mustn't be shared with another game.
+	// The bus stays with the host while the game is parked and is handed to each game
+	// loaded to apply a decision.
+	public void setEventBus(long gameId, GameEventBus eventBus) {
+		HostedGame hosted = this.games.get(gameId);
+		if (hosted == null) {
+			return;
+		}
+		synchronized (hosted) {
+			hosted.eventBus = eventBus;
+		}
+	}
+
+	// Applies a decision on a worker. The future gives what the game said in reply,
+	// followed by the next prompt if the game isn't over. A game that ends here, or had
+	// ended on a timeout, is dropped along with the reply.
+	public Future<String> submit(long gameId, final String playerName, final String input) {
+		final HostedGame hosted = this.games.get(gameId);
+		return this.workers.submit(new Callable<String>() {
+			public String call() {
+				if (hosted == null) {
+					return "There is no such game.\n";
+				}
+				synchronized (hosted) {
+					if (hosted.isOver()) {
+						GameHost.this.games.remove(hosted.gameId);
+						return hosted.takePendingText() + "The game is over.\n";
+					}
+					if (!hosted.waitingName.equals(playerName)) {
+						return "It is " + hosted.waitingName + "'s decision, not yours.\n";
+					}
+					GameFlow flow = unpark(hosted);
+					flow.submit(input);
+					String prompt = flow.isOver() ? "" : flow.getPrompt();
+					park(hosted, flow);
+					if (hosted.isOver()) {
+						GameHost.this.games.remove(hosted.gameId);
+					}
+					return hosted.takePendingText() + prompt;
+				}
+			}
+		});
+	}
+
+	// Stops the workers once the decisions already submitted are done. Pending timeouts
+	// are cancelled, so parked games stay where they are.
+	public void shutdown() {
+		this.shutDown = true;
+		for (HostedGame hosted : this.games.values()) {
+			synchronized (hosted) {
+				if (hosted.timeout != null) {
+					hosted.timeout.cancel();
+					hosted.timeout = null;
+				}
+			}
+		}
+		this.workers.shutdown();
+	}
+
+	// The threat index holds the loaded Player objects, so it can't outlive one load and
+	// is rebuilt from scratch each time. That is one O(log n) update per seat, at most
+	// maxPlayers of them, which is small next to rebuilding the game itself.
+	private GameFlow load(HostedGame hosted) {
+		GameFlow flow = this.arena.load(hosted.slot);
+		flow.getGame().setStatsStore(this.statsStore);
+		flow.getGame().setThreatIndex(new ThreatIndex());
+		return flow;
+	}
+
+	// Called with the game's lock held once the flow has stopped for a new decision. The
+	// flow is written to the game's slot and dropped. A finished game gives its slot back
+	// but stays with the host, over, until what it said last has been taken.
+	private void park(final HostedGame hosted, GameFlow flow) {
+		hosted.pendingText += flow.takeOutput();
+		if (flow.isOver()) {
+			this.arena.free(hosted.slot);
+			hosted.slot = -1;
+			return;
+		}
+		Player waiting = flow.getWaitingPlayer();
+		hosted.waitingName = waiting.getName();
+		hosted.decisionNumber = flow.getDecisionNumber();
+		hosted.waitingSinceMillis = HashedWheelTimer.nowMillis();
+		long budgetMillis = (waiting.getClock() == null) ? -1 : waiting.getClock().getNextBudgetMillis();
+		this.arena.park(hosted.slot, flow);
+		if (budgetMillis < 0 || this.shutDown) {
+			return;
+		}
+		final int decisionNumber = hosted.decisionNumber;
+		hosted.timeout = TurnClock.TIMER.schedule(new Runnable() {
+			public void run() {
+				if (GameHost.this.shutDown) {
+					return;
+				}
+				try {
+					GameHost.this.workers.execute(new Runnable() {
+						public void run() {
+							timeOut(hosted, decisionNumber);
+						}
+					});
+				}
+				catch (RejectedExecutionException ex) {
+					// The host shut down after the check above.
+				}
+			}
+		}, budgetMillis);
+	}
+
+	// Called with the game's lock held before the waiting player's decision is applied.
+	private GameFlow unpark(HostedGame hosted) {
+		if (hosted.timeout != null) {
+			hosted.timeout.cancel();
+			hosted.timeout = null;
+		}
+		GameFlow flow = load(hosted);
+		flow.getGame().setEventBus(hosted.eventBus);
+		TurnClock clock = flow.getWaitingPlayer().getClock();
+		if (clock != null) {
+			clock.spend(HashedWheelTimer.nowMillis() - hosted.waitingSinceMillis);
+		}
+		return flow;
+	}
+
+	// What the timeout produces is kept until the next reply.
+	private void timeOut(HostedGame hosted, int decisionNumber) {
+		synchronized (hosted) {
+			if (hosted.isOver() || hosted.decisionNumber != decisionNumber) {
+				return;
+			}
+			GameFlow flow = unpark(hosted);
+			flow.timeOut();
+			park(hosted, flow);
+		}
+	}
+
+	// What the host keeps on the heap for each game: enough to turn away a decision from
+	// the wrong player or a stale timeout without loading the game.
+	static class HostedGame {
+		private long gameId;
+		private int slot;
+		private String waitingName;
+		private int decisionNumber;
+		private long waitingSinceMillis;
+		private HashedWheelTimer.Timeout timeout;
+		private String pendingText;
+		private GameEventBus eventBus;
+
+		HostedGame(long gameId, int slot) {
+			this.gameId = gameId;
+			this.slot = slot;
+			this.pendingText = "";
+		}
+
+		boolean isOver() {
+			return this.slot < 0;
+		}
+
+		String takePendingText() {
+			String text = this.pendingText;
+			this.pendingText = "";
+			return text;
+		}
+	}
+
+	// Hosts lots of games, each with one person against a greedy and a random bot, and
+	// plays the person's side of all of them from this one thread, a decision at a time
+	// per game. It shows that parked games need no threads of their own and next to no
+	// heap.
+	public static void main(String[] args) throws Exception {
+		int numGames = 10000;
+		int numWorkers = Runtime.getRuntime().availableProcessors();
+		try {
+			if (args.length > 0) {
+				numGames = Integer.parseInt(args[0]);
+			}
+			if (args.length > 1) {
+				numWorkers = Integer.parseInt(args[1]);
+			}
+		}
+		catch (NumberFormatException ex) {
+			System.out.println("Usage: java GameHost [numGames] [numWorkers]");
+			return;
+		}
+
+		GameHost host = new GameHost(numWorkers);
+		long start = System.currentTimeMillis();
+		ArrayList<Long> gameIds = new ArrayList<Long>();
+		for (int idx = 0; idx < numGames; idx++) {
+			long gameId = host.createGame(new String[] {"Guest"}, new Strategy[] {new GreedyStrategy(), new RandomStrategy()}, idx);
+			host.takeText(gameId);
+			if (host.peek(gameId) != null) {
+				gameIds.add(gameId);
+			}
+		}
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		System.out.println(host.getNumGames() + " games are parked in " + (host.getArena().getReservedBytes() >> 20) + " MB off the heap (" + host.getArena().getRecordBytes() + " bytes each), with " + ((runtime.totalMemory() - runtime.freeMemory()) >> 20) + " MB of heap in use and " + Thread.activeCount() + " threads running.");
+
+		Strategy guest = new GreedyStrategy();
+		long numDecisions = 0;
+		while (gameIds.size() > 0) {
+			ArrayList<Future<String>> replies = new ArrayList<Future<String>>();
+			for (long gameId : gameIds) {
+				replies.add(host.submit(gameId, "Guest", answer(host.peek(gameId), guest)));
+			}
+			for (Future<String> reply : replies) {
+				reply.get();
+			}
+			numDecisions += gameIds.size();
+
+			ArrayList<Long> stillWaiting = new ArrayList<Long>();
+			for (long gameId : gameIds) {
+				if (host.peek(gameId) != null) {
+					stillWaiting.add(gameId);
+				}
+			}
+			gameIds = stillWaiting;
+		}
+		System.out.println("Finished " + numGames + " games after " + numDecisions + " decisions from the guest in " + (System.currentTimeMillis() - start) + " ms on " + numWorkers + " workers.");
+		long gcMillis = 0;
+		long numCollections = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcMillis += collector.getCollectionTime();
+			numCollections += collector.getCollectionCount();
+		}
+		System.out.println("Garbage collection took " + gcMillis + " ms over " + numCollections + " collections.");
+		host.shutdown();
+	}
+
+	// Turns a strategy's choice into what a person would type at the current prompt.
+	private static String answer(GameFlow flow, Strategy strategy) {
+		Game game = flow.getGame();
+		Player self = flow.getWaitingPlayer();
+		int state = flow.getState();
+		if (state == GameFlow.CHOOSE_ACTION) {
+			int action = strategy.chooseAction(self, game);
+			if (action == Strategy.ATTACK && self.getAttackCards().size() > 0) {
+				Card card = strategy.chooseAttackCard(self, game);
+				if (card != null && strategy.chooseTarget(self, card, self.getEnemies(), game) != null) {
+					return "1";
+				}
+			}
+			else if (action == Strategy.DRAW && game.getDeck().getNumCards() > 0) {
+				return "2";
+			}
+			return "3";
+		}
+		else if (state == GameFlow.CHOOSE_ATTACK_CARD) {
+			return Integer.toString(strategy.chooseAttackCard(self, game).getValue());
+		}
+		else if (state == GameFlow.CHOOSE_TARGET) {
+			Player target = strategy.chooseTarget(self, flow.getAttackCard(), flow.getTargets(), game);
+			return Integer.toString(flow.getTargets().indexOf(target) + 1);
+		}
+		else if (state == GameFlow.CHOOSE_DEFENSE) {
+			Card card = strategy.chooseDefenseCard(self, flow.getCurrentPlayer(), flow.getAttackCard().getValue(), game);
+			return (card == null) ? "x" : Integer.toString(card.getValue());
+		}
+		else if (state == GameFlow.CHOOSE_STEAL_SUIT) {
+			Card card = strategy.chooseStolenCard(self, flow.getVictim(), game);
+			return card.getSuit().equals("CLUBS") ? "1" : "2";
+		}
+		ArrayList<Card> cards = flow.getStealSuit().equals("CLUBS") ? flow.getVictim().getAttackCards() : flow.getVictim().getDefenseCards();
+		return Integer.toString(GreedyStrategy.highest(cards).getValue());
+	}
+}
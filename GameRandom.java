@@ -0,0 +1,37 @@
+import java.util.Random;
+
+// A Random whose whole state can be read out and put back, so a GameArena can park a
+// seeded game and load it again without changing any draw to come. It steps the same
+// 48-bit generator as java.util.Random, so a seed gives the same numbers either way. A
+// game only draws from one thread at a time, so unlike Random it doesn't lock.
+class GameRandom extends Random {
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	private long state;
+
+	public GameRandom(long seed) {
+		super(seed);
+	}
+
+	// Random's constructor calls this too, before the state field could be set any other way.
+	public synchronized void setSeed(long seed) {
+		super.setSeed(seed);
+		this.state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	public long getState() {
+		return this.state;
+	}
+
+	// Carries on from a state read with getState.
+	public void setState(long state) {
+		this.state = state & MASK;
+	}
+
+	protected int next(int bits) {
+		this.state = (this.state * MULTIPLIER + ADDEND) & MASK;
+		return (int)(this.state >>> (48 - bits));
+	}
+}
@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+
+// Always attacks with its biggest club at the weakest enemy, blocks with the smallest
+// diamond that stops the whole attack, and steals the biggest card it can see. In a game
+// with a ThreatIndex, the weakest enemy is the index's best target.
+class GreedyStrategy implements Strategy {
+	public String getName() {
+		return "greedy";
+	}
+
+	public int chooseAction(Player self, Game game) {
+		if (self.getAttackCards().size() > 0) {
+			return ATTACK;
+		}
+		if (game.getDeck().getNumCards() > 0) {
+			return DRAW;
+		}
+		return FINISH;
+	}
+
+	public Card chooseAttackCard(Player self, Game game) {
+		return highest(self.getAttackCards());
+	}
+
+	public Player chooseTarget(Player self, Card attackCard, ArrayList<Player> enemies, Game game) {
+		ThreatIndex threats = getThreatIndex(self, attackCard, game);
+		Player best = (threats == null) ? null : threats.getBestTarget(self);
+		if (best != null && enemies.contains(best)) {
+			return best;
+		}
+		Player target = null;
+		for (Player enemy : enemies) {
+			if (target == null || enemy.getHealth() < target.getHealth()) {
+				target = enemy;
+			}
+		}
+		return target;
+	}
+
+	public Card chooseDefenseCard(Player self, Player attacker, int attackValue, Game game) {
+		Card defenseCard = null;
+		for (Card card : self.getDefenseCards()) {
+			if (card.getValue() >= attackValue && (defenseCard == null || card.getValue() < defenseCard.getValue())) {
+				defenseCard = card;
+			}
+		}
+		return defenseCard;
+	}
+
+	public Card chooseStolenCard(Player self, Player victim, Game game) {
+		Card attackCard = highest(victim.getAttackCards());
+		Card defenseCard = highest(victim.getDefenseCards());
+		if (defenseCard == null || (attackCard != null && attackCard.getValue() >= defenseCard.getValue())) {
+			return attackCard;
+		}
+		return defenseCard;
+	}
+
+	// The game's ThreatIndex if it has one and the attack is with the player's best club,
+	// which is the attack the index answers for. Null otherwise.
+	static ThreatIndex getThreatIndex(Player self, Card attackCard, Game game) {
+		ThreatIndex threats = game.getThreatIndex();
+		if (threats == null || attackCard.getValue() != threats.getAttack(self)) {
+			return null;
+		}
+		return threats;
+	}
+
+	static Card highest(ArrayList<Card> cards) {
+		Card best = null;
+		for (Card card : cards) {
+			if (best == null || card.getValue() > best.getValue()) {
+				best = card;
+			}
+		}
+		return best;
+	}
+
+	static Card lowest(ArrayList<Card> cards) {
+		Card best = null;
+		for (Card card : cards) {
+			if (best == null || card.getValue() < best.getValue()) {
+				best = card;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// One thread that runs many timeouts. Time is cut into ticks and each timeout is put in
+// the bucket for the tick it expires on, wrapping around the wheel with a count of
+// remaining rounds for deadlines further away than one turn of the wheel. Scheduling and
+// cancelling are O(1) from any thread, and each tick only looks at one bucket, so
+// thousands of turn clocks cost one thread instead of one each. Timeouts fire up to one
+// tick late, which is fine for clocks measured in seconds. Deadlines are measured with
+// System.nanoTime, so setting the wall clock doesn't fire or hold back any timeout.
+class HashedWheelTimer {
+	private long tickMillis;
+	private ArrayList<ArrayList<Timeout>> wheel;
+	private int mask;
+	private ConcurrentLinkedQueue<Timeout> pending;
+	private Thread worker;
+	private long startMillis;
+	private volatile FailureHandler failureHandler;
+
+	public HashedWheelTimer(long tickMillis, int numBuckets) {
+		this.tickMillis = tickMillis;
+		int size = Integer.highestOneBit(Math.max(numBuckets, 2) - 1) << 1;
+		this.wheel = new ArrayList<ArrayList<Timeout>>();
+		for (int idx = 0; idx < size; idx++) {
+			this.wheel.add(new ArrayList<Timeout>());
+		}
+		this.mask = size - 1;
+		this.pending = new ConcurrentLinkedQueue<Timeout>();
+		this.failureHandler = LOG_FAILURE;
+	}
+
+	interface FailureHandler {
+		// Called on the timer thread with whatever a task threw.
+		void taskFailed(Throwable error);
+	}
+
+	public static final FailureHandler LOG_FAILURE = new FailureHandler() {
+		public void taskFailed(Throwable error) {
+			System.err.println("A timeout task failed and was dropped: " + error);
+		}
+	};
+
+	public void setFailureHandler(FailureHandler failureHandler) {
+		this.failureHandler = failureHandler;
+	}
+
+	// Milliseconds from an arbitrary start, which only ever move forward.
+	public static long nowMillis() {
+		return System.nanoTime() / 1000000;
+	}
+
+	// Runs the task on the timer thread after delayMillis, unless it is cancelled first.
+	// Tasks should be quick, since they hold up every other timeout.
+	public Timeout schedule(Runnable task, long delayMillis) {
+		start();
+		Timeout timeout = new Timeout(task, nowMillis() + Math.max(delayMillis, 0));
+		this.pending.add(timeout);
+		return timeout;
+	}
+
+	private synchronized void start() {
+		if (this.worker != null) {
+			return;
+		}
+		this.startMillis = nowMillis();
+		this.worker = new Thread(new Runnable() {
+			public void run() {
+				runWheel();
+			}
+		}, "turn-clock-timer");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	private void runWheel() {
+		long tick = 0;
+		while (true) {
+			long sleepMillis = this.startMillis + (tick + 1) * this.tickMillis - nowMillis();
+			if (sleepMillis > 0) {
+				try {
+					Thread.sleep(sleepMillis);
+				}
+				catch (InterruptedException ex) {
+					return;
+				}
+			}
+
+			Timeout timeout;
+			while ((timeout = this.pending.poll()) != null) {
+				if (timeout.cancelled) {
+					continue;
+				}
+				long expiryTick = Math.max((timeout.deadlineMillis - this.startMillis + this.tickMillis - 1) / this.tickMillis, tick);
+				timeout.remainingRounds = (expiryTick - tick) / this.wheel.size();
+				this.wheel.get((int)(expiryTick & this.mask)).add(timeout);
+			}
+
+			ArrayList<Timeout> bucket = this.wheel.get((int)(tick & this.mask));
+			for (int idx = bucket.size() - 1; idx >= 0; idx--) {
+				timeout = bucket.get(idx);
+				if (timeout.cancelled) {
+					removeAt(bucket, idx);
+				}
+				else if (timeout.remainingRounds <= 0) {
+					removeAt(bucket, idx);
+					runTask(timeout);
+				}
+				else {
+					timeout.remainingRounds--;
+				}
+			}
+			tick++;
+		}
+	}
+
+	// A task that throws only loses its own timeout. Letting it kill this thread would
+	// silently stop every other timeout for good.
+	private void runTask(Timeout timeout) {
+		try {
+			timeout.task.run();
+		}
+		catch (Throwable ex) {
+			this.failureHandler.taskFailed(ex);
+		}
+	}
+
+	// Order within a bucket doesn't matter, so swap the last element into the hole.
+	private static void removeAt(ArrayList<Timeout> bucket, int idx) {
+		int last = bucket.size() - 1;
+		bucket.set(idx, bucket.get(last));
+		bucket.remove(last);
+	}
+
+	static class Timeout {
+		private Runnable task;
+		private long deadlineMillis;
+		private long remainingRounds;
+		private volatile boolean cancelled;
+
+		Timeout(Runnable task, long deadlineMillis) {
+			this.task = task;
+			this.deadlineMillis = deadlineMillis;
+		}
+
+		public void cancel() {
+			this.cancelled = true;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+// A linear policy over a handful of features. The default weights are only a starting
+// point; train() tunes them by hill climbing on headless games against the other bots.
+class LearnedStrategy implements Strategy {
+	public static final double[] DEFAULT_WEIGHTS = {
+		0.2, 1.0, 2.0, -0.5, 0.3, 0.2, 0.3,
+		1.0, -1.5, -5.0, -0.3,
+		1.0, 0.2
+	};
+
+	private double[] weights;
+
+	public LearnedStrategy() {
+		this(DEFAULT_WEIGHTS);
+	}
+
+	public LearnedStrategy(double[] weights) {
+		this.weights = weights.clone();
+	}
+
+	public double[] getWeights() {
+		return this.weights.clone();
+	}
+
+	public String getName() {
+		return "learned";
+	}
+
+	public int chooseAction(Player self, Game game) {
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (Card card : self.getAttackCards()) {
+			for (Player enemy : self.getEnemies()) {
+				bestScore = Math.max(bestScore, scoreAttack(card.getValue(), enemy));
+			}
+		}
+		if (bestScore > this.weights[6]) {
+			return ATTACK;
+		}
+		if (game.getDeck().getNumCards() > 0) {
+			return DRAW;
+		}
+		if (self.getAttackCards().size() > 0) {
+			return ATTACK;
+		}
+		return FINISH;
+	}
+
+	public Card chooseAttackCard(Player self, Game game) {
+		Card bestCard = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		ArrayList<Player> enemies = self.getEnemies();
+		for (Card card : self.getAttackCards()) {
+			for (Player enemy : enemies) {
+				double score = scoreAttack(card.getValue(), enemy);
+				if (score > bestScore) {
+					bestScore = score;
+					bestCard = card;
+				}
+			}
+		}
+		return bestCard;
+	}
+
+	public Player chooseTarget(Player self, Card attackCard, ArrayList<Player> enemies, Game game) {
+		Player bestTarget = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (Player enemy : enemies) {
+			double score = scoreAttack(attackCard.getValue(), enemy);
+			if (score > bestScore) {
+				bestScore = score;
+				bestTarget = enemy;
+			}
+		}
+		return bestTarget;
+	}
+
+	public Card chooseDefenseCard(Player self, Player attacker, int attackValue, Game game) {
+		Card bestCard = null;
+		double bestScore = scoreDefense(attackValue, 0, self);
+		for (Card card : self.getDefenseCards()) {
+			double score = scoreDefense(attackValue, card.getValue(), self);
+			if (score > bestScore) {
+				bestScore = score;
+				bestCard = card;
+			}
+		}
+		return bestCard;
+	}
+
+	public Card chooseStolenCard(Player self, Player victim, Game game) {
+		Card bestCard = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (Card card : victim.getAttackCards()) {
+			double score = this.weights[11] * card.getValue() / 15.0 + this.weights[12];
+			if (score > bestScore) {
+				bestScore = score;
+				bestCard = card;
+			}
+		}
+		for (Card card : victim.getDefenseCards()) {
+			double score = this.weights[11] * card.getValue() / 15.0;
+			if (score > bestScore) {
+				bestScore = score;
+				bestCard = card;
+			}
+		}
+		return bestCard;
+	}
+
+	private double scoreAttack(int attackValue, Player enemy) {
+		Card maxDefense = GreedyStrategy.highest(enemy.getDefenseCards());
+		int damage = attackValue - ((maxDefense == null) ? 0 : maxDefense.getValue());
+		double[] w = this.weights;
+		return w[0] * attackValue / 15.0
+			+ w[1] * damage / 15.0
+			+ w[2] * ((damage >= enemy.getHealth()) ? 1 : 0)
+			+ w[3] * enemy.getHealth() / 30.0
+			+ w[4] * enemy.getNumStealableCards() / 10.0
+			+ w[5] * enemy.getTotalResources() / 100.0;
+	}
+
+	private double scoreDefense(int attackValue, int defenseValue, Player self) {
+		int damage = Math.max(attackValue - defenseValue, 0);
+		double[] w = this.weights;
+		return w[7] * ((damage == 0) ? 1 : 0)
+			+ w[8] * Math.min(damage, self.getHealth()) / (double)Math.max(self.getHealth(), 1)
+			+ w[9] * ((damage >= self.getHealth()) ? 1 : 0)
+			+ w[10] * defenseValue / 15.0;
+	}
+
+	// Hill climbs the weights: each generation perturbs the current weights and keeps the
+	// change if it wins more of the same seeded games against the greedy and search bots.
+	public static LearnedStrategy train(int generations, int gamesPerGeneration, long seed) {
+		Random random = new Random(seed);
+		LearnedStrategy best = new LearnedStrategy();
+		Strategy[] opponents = {new GreedyStrategy(), new SearchStrategy()};
+		for (int generation = 0; generation < generations; generation++) {
+			double[] weights = best.getWeights();
+			for (int idx = 0; idx < weights.length; idx++) {
+				weights[idx] += random.nextGaussian() * 0.2;
+			}
+			LearnedStrategy candidate = new LearnedStrategy(weights);
+			long gameSeed = random.nextLong();
+			if (countWins(candidate, opponents, gamesPerGeneration, gameSeed) > countWins(best, opponents, gamesPerGeneration, gameSeed)) {
+				best = candidate;
+			}
+		}
+		return best;
+	}
+
+	private static int countWins(Strategy strategy, Strategy[] opponents, int numGames, long seed) {
+		Strategy[] seats = {strategy, opponents[0], opponents[1]};
+		int wins = 0;
+		for (int game = 0; game < numGames; game++) {
+			Strategy[] rotated = Tournament.rotate(seats, game % seats.length);
+			int[] places = Tournament.playGame(rotated, seed + game / seats.length);
+			if (places[(seats.length - game % seats.length) % seats.length] == 0) {
+				wins++;
+			}
+		}
+		return wins;
+	}
+}
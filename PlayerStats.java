@@ -0,0 +1,117 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Totals for one player name. The same record is used for a single game's result and for
+// the running totals, so compacting the log is just adding records together.
+class PlayerStats implements Comparable<PlayerStats> {
+	private String name;
+	private long gamesPlayed;
+	private long wins;
+	private long kills;
+	private long cardsStolen;
+	private long deaths;
+	private long healthAtDeathSum;
+
+	public PlayerStats(String name) {
+		this.name = name;
+	}
+
+	public static PlayerStats fromGame(Player player, boolean won) {
+		PlayerStats stats = new PlayerStats(player.getName());
+		stats.gamesPlayed = 1;
+		stats.wins = won ? 1 : 0;
+		stats.kills = player.getKills();
+		stats.cardsStolen = player.getCardsStolen();
+		if (player.getDead()) {
+			stats.deaths = 1;
+			stats.healthAtDeathSum = player.getHealthAtDeath();
+		}
+		return stats;
+	}
+
+	public PlayerStats copy() {
+		PlayerStats stats = new PlayerStats(this.name);
+		stats.add(this);
+		return stats;
+	}
+
+	public void add(PlayerStats other) {
+		this.gamesPlayed += other.gamesPlayed;
+		this.wins += other.wins;
+		this.kills += other.kills;
+		this.cardsStolen += other.cardsStolen;
+		this.deaths += other.deaths;
+		this.healthAtDeathSum += other.healthAtDeathSum;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public long getGamesPlayed() {
+		return this.gamesPlayed;
+	}
+
+	public long getWins() {
+		return this.wins;
+	}
+
+	public long getKills() {
+		return this.kills;
+	}
+
+	public long getCardsStolen() {
+		return this.cardsStolen;
+	}
+
+	public long getDeaths() {
+		return this.deaths;
+	}
+
+	// Players only die at 0 health, so this is the health they had left just before the
+	// attack that killed them.
+	public double getAverageHealthAtDeath() {
+		if (this.deaths == 0) {
+			return 0;
+		}
+		return (double)this.healthAtDeathSum / this.deaths;
+	}
+
+	// Leaderboard order: most wins, then fewest games, then name.
+	public int compareTo(PlayerStats other) {
+		if (this.wins != other.wins) {
+			return Long.compare(other.wins, this.wins);
+		}
+		if (this.gamesPlayed != other.gamesPlayed) {
+			return Long.compare(this.gamesPlayed, other.gamesPlayed);
+		}
+		return this.name.compareTo(other.name);
+	}
+
+	public String toString() {
+		return String.format("%s: %d wins in %d games, %d kills, %d cards stolen, %.1f average health at death",
+			this.name, this.wins, this.gamesPlayed, this.kills, this.cardsStolen, getAverageHealthAtDeath());
+	}
+
+	void write(DataOutputStream out) throws IOException {
+		out.writeUTF(this.name);
+		out.writeLong(this.gamesPlayed);
+		out.writeLong(this.wins);
+		out.writeLong(this.kills);
+		out.writeLong(this.cardsStolen);
+		out.writeLong(this.deaths);
+		out.writeLong(this.healthAtDeathSum);
+	}
+
+	static PlayerStats read(DataInputStream in) throws IOException {
+		PlayerStats stats = new PlayerStats(in.readUTF());
+		stats.gamesPlayed = in.readLong();
+		stats.wins = in.readLong();
+		stats.kills = in.readLong();
+		stats.cardsStolen = in.readLong();
+		stats.deaths = in.readLong();
+		stats.healthAtDeathSum = in.readLong();
+		return stats;
+	}
+}
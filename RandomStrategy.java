@@ -0,0 +1,48 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+class RandomStrategy implements Strategy {
+	public String getName() {
+		return "random";
+	}
+
+	public int chooseAction(Player self, Game game) {
+		return game.getRandom().nextInt(3) + 1;
+	}
+
+	public Card chooseAttackCard(Player self, Game game) {
+		return pick(self.getAttackCards(), game.getRandom());
+	}
+
+	public Player chooseTarget(Player self, Card attackCard, ArrayList<Player> enemies, Game game) {
+		if (enemies.size() == 0) {
+			return null;
+		}
+		return enemies.get(game.getRandom().nextInt(enemies.size()));
+	}
+
+	public Card chooseDefenseCard(Player self, Player attacker, int attackValue, Game game) {
+		ArrayList<Card> cards = self.getDefenseCards();
+		int idx = game.getRandom().nextInt(cards.size() + 1);
+		if (idx == cards.size()) {
+			return null;
+		}
+		return cards.get(idx);
+	}
+
+	public Card chooseStolenCard(Player self, Player victim, Game game) {
+		Random random = game.getRandom();
+		int idx = random.nextInt(victim.getNumStealableCards());
+		if (idx < victim.getAttackCards().size()) {
+			return victim.getAttackCards().get(idx);
+		}
+		return victim.getDefenseCards().get(idx - victim.getAttackCards().size());
+	}
+
+	private Card pick(ArrayList<Card> cards, Random random) {
+		if (cards.size() == 0) {
+			return null;
+		}
+		return cards.get(random.nextInt(cards.size()));
+	}
+}
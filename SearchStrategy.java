@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+
+// Looks one exchange ahead: every attack card against every enemy, answered by every
+// defense that enemy could play. The attack with the best worst-case outcome is played if
+// it beats the expected value of drawing a card instead.
+class SearchStrategy implements Strategy {
+	private static final double KILL_BONUS = 30;
+	private static final double CARD_COST = 0.5;
+	private static final double DRAW_WEIGHT = 0.5;
+
+	public String getName() {
+		return "search";
+	}
+
+	public int chooseAction(Player self, Game game) {
+		double attackScore = Double.NEGATIVE_INFINITY;
+		for (Card card : self.getAttackCards()) {
+			for (Player enemy : self.getEnemies()) {
+				attackScore = Math.max(attackScore, worstCase(card.getValue(), enemy));
+			}
+		}
+		CardDeck deck = game.getDeck();
+		if (deck.getNumPlayableCards() > 0 && attackScore < DRAW_WEIGHT * deck.getExpectedDrawValue()) {
+			return DRAW;
+		}
+		if (attackScore > 0) {
+			return ATTACK;
+		}
+		return FINISH;
+	}
+
+	public Card chooseAttackCard(Player self, Game game) {
+		Card bestCard = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		ArrayList<Player> enemies = self.getEnemies();
+		for (Card card : self.getAttackCards()) {
+			for (Player enemy : enemies) {
+				double score = worstCase(card.getValue(), enemy);
+				if (score > bestScore) {
+					bestScore = score;
+					bestCard = card;
+				}
+			}
+		}
+		return bestCard;
+	}
+
+	// An enemy the game's ThreatIndex says this attack kills outright is taken without
+	// scoring the others.
+	public Player chooseTarget(Player self, Card attackCard, ArrayList<Player> enemies, Game game) {
+		ThreatIndex threats = GreedyStrategy.getThreatIndex(self, attackCard, game);
+		Player killable = (threats == null) ? null : threats.getKillableEnemy(self);
+		if (killable != null && enemies.contains(killable)) {
+			return killable;
+		}
+		Player bestTarget = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (Player enemy : enemies) {
+			double score = worstCase(attackCard.getValue(), enemy);
+			if (score > bestScore) {
+				bestScore = score;
+				bestTarget = enemy;
+			}
+		}
+		return bestTarget;
+	}
+
+	public Card chooseDefenseCard(Player self, Player attacker, int attackValue, Game game) {
+		Card bestCard = null;
+		double bestScore = gain(attackValue, self, 0);
+		for (Card card : self.getDefenseCards()) {
+			double score = gain(attackValue, self, card.getValue());
+			if (score < bestScore) {
+				bestScore = score;
+				bestCard = card;
+			}
+		}
+		return bestCard;
+	}
+
+	public Card chooseStolenCard(Player self, Player victim, Game game) {
+		Card attackCard = GreedyStrategy.highest(victim.getAttackCards());
+		Card defenseCard = GreedyStrategy.highest(victim.getDefenseCards());
+		if (attackCard == null) {
+			return defenseCard;
+		}
+		if (defenseCard == null) {
+			return attackCard;
+		}
+		// A club is worth more to a player with nothing to attack with, and a diamond to
+		// one with nothing to defend with.
+		double attackValue = attackCard.getValue() + (self.getAttackCards().size() == 0 ? 3 : 0);
+		double defenseValue = defenseCard.getValue() + (self.getDefenseCards().size() == 0 ? 3 : 0);
+		return (attackValue >= defenseValue) ? attackCard : defenseCard;
+	}
+
+	// The gain for the attacker when the victim answers with their best defense.
+	private double worstCase(int attackValue, Player victim) {
+		double score = gain(attackValue, victim, 0);
+		for (Card card : victim.getDefenseCards()) {
+			score = Math.min(score, gain(attackValue, victim, card.getValue()));
+		}
+		return score;
+	}
+
+	private double gain(int attackValue, Player victim, int defenseValue) {
+		double score = CARD_COST * (defenseValue - attackValue);
+		if (attackValue > defenseValue) {
+			int damage = attackValue - defenseValue;
+			score += Math.min(damage, victim.getHealth());
+			if (damage >= victim.getHealth()) {
+				score += KILL_BONUS + victim.getNumStealableCards();
+			}
+		}
+		return score;
+	}
+}
@@ -0,0 +1,98 @@
+// Plays a range of seeds with a fixed seating, either in this process or spread over
+// worker processes by a SimulationCoordinator. Both give identical stats for the same seeds.
+class Simulation {
+	public static void main(String[] args) throws Exception {
+		String usage = "Usage: java Simulation local <firstSeed> <numSeeds> <strategy> <strategy> [...]\n"
+			+ "       java Simulation distributed|verify <numWorkers> <firstSeed> <numSeeds> <strategy> <strategy> [...]\n"
+			+ "Strategies: random, greedy, search, learned. Add -Dsimulation.crashAfter=N to make the first worker crash after N games.";
+		try {
+			String mode = args[0];
+			int argIdx = 1;
+			int numWorkers = 0;
+			if (!mode.equals("local")) {
+				numWorkers = Integer.parseInt(args[argIdx++]);
+			}
+			long firstSeed = Long.parseLong(args[argIdx++]);
+			long numSeeds = Long.parseLong(args[argIdx++]);
+			String[] seats = new String[args.length - argIdx];
+			for (int idx = 0; idx < seats.length; idx++) {
+				seats[idx] = args[argIdx + idx];
+				getStrategy(seats[idx]);
+			}
+			if (seats.length < 2) {
+				throw new IllegalArgumentException("At least 2 strategies are needed.");
+			}
+
+			SimulationStats distributed = null;
+			if (!mode.equals("local")) {
+				long start = System.currentTimeMillis();
+				SimulationCoordinator coordinator = new SimulationCoordinator(seats, Tournament.MAX_ROUNDS);
+				coordinator.setCrashAfter(Long.getLong("simulation.crashAfter", 0));
+				distributed = coordinator.run(firstSeed, numSeeds, numWorkers);
+				System.out.println("Distributed over " + numWorkers + " workers in " + (System.currentTimeMillis() - start) + " ms:");
+				distributed.print(seats);
+			}
+			if (!mode.equals("distributed")) {
+				long start = System.currentTimeMillis();
+				SimulationStats local = runLocal(seats, firstSeed, numSeeds, Tournament.MAX_ROUNDS);
+				System.out.println("In this process in " + (System.currentTimeMillis() - start) + " ms:");
+				local.print(seats);
+				if (distributed != null) {
+					System.out.println(local.equals(distributed) ? "The results are identical." : "The results DIFFER.");
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException | IllegalArgumentException ex) {
+			if (ex.getMessage() != null && !(ex instanceof ArrayIndexOutOfBoundsException)) {
+				System.out.println(ex.getMessage());
+			}
+			System.out.println(usage);
+		}
+	}
+
+	// Bots are rebuilt from their names in every worker, so only strategies that are the
+	// same in every process can be used. That means the learned bot uses its default weights.
+	public static Strategy getStrategy(String name) {
+		if (name.equals("random")) {
+			return new RandomStrategy();
+		}
+		else if (name.equals("greedy")) {
+			return new GreedyStrategy();
+		}
+		else if (name.equals("search")) {
+			return new SearchStrategy();
+		}
+		else if (name.equals("learned")) {
+			return new LearnedStrategy();
+		}
+		throw new IllegalArgumentException("Unknown strategy: " + name);
+	}
+
+	public static Strategy[] getStrategies(String[] names) {
+		Strategy[] strategies = new Strategy[names.length];
+		for (int idx = 0; idx < names.length; idx++) {
+			strategies[idx] = getStrategy(names[idx]);
+		}
+		return strategies;
+	}
+
+	public static void playSeed(Strategy[] seats, long seed, int maxRounds, SimulationStats stats) {
+		Game game = new Game(seed);
+		Player[] players = new Player[seats.length];
+		for (int idx = 0; idx < seats.length; idx++) {
+			players[idx] = new Player(seats[idx].getName() + " " + (idx + 1), game, seats[idx]);
+			game.getPlayers().add(players[idx]);
+		}
+		Player winner = game.playHeadless(maxRounds);
+		stats.addGame(seed, players, Tournament.getPlaces(game, players), winner == null);
+	}
+
+	public static SimulationStats runLocal(String[] seats, long firstSeed, long numSeeds, int maxRounds) {
+		Strategy[] strategies = getStrategies(seats);
+		SimulationStats stats = new SimulationStats(seats.length);
+		for (long seed = firstSeed; seed < firstSeed + numSeeds; seed++) {
+			playSeed(strategies, seed, maxRounds, stats);
+		}
+		return stats;
+	}
+}
@@ -0,0 +1,214 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+// Splits a simulation into seed ranges and farms them out to SimulationWorker processes
+// over loopback sockets. Workers stream back stats for each finished chunk of a range, so
+// when a worker dies only the part of its range it hadn't reported yet is queued again,
+// and a replacement worker is started. Every seed is counted exactly once.
+class SimulationCoordinator {
+	static final byte RANGE = 1;
+	static final byte STOP = 2;
+	static final byte PARTIAL = 3;
+
+	private static final long SEEDS_PER_RANGE = 2000;
+	private static final int MAX_RESTARTS = 8;
+
+	private String[] seats;
+	private int maxRounds;
+	private long crashAfter;
+	private LinkedBlockingDeque<long[]> ranges;
+	private SimulationStats total;
+	private long remainingSeeds;
+	private int restarts;
+	private ArrayList<Process> workers;
+	private ServerSocket server;
+
+	public SimulationCoordinator(String[] seats, int maxRounds) {
+		this.seats = seats;
+		this.maxRounds = maxRounds;
+		this.ranges = new LinkedBlockingDeque<long[]>();
+		this.workers = new ArrayList<Process>();
+	}
+
+	// For testing recovery: the first worker exits abruptly after this many games.
+	public void setCrashAfter(long crashAfter) {
+		this.crashAfter = crashAfter;
+	}
+
+	public SimulationStats run(long firstSeed, long numSeeds, int numWorkers) throws IOException, InterruptedException {
+		this.total = new SimulationStats(this.seats.length);
+		this.remainingSeeds = numSeeds;
+		this.restarts = 0;
+		for (long first = firstSeed; first < firstSeed + numSeeds; first += SEEDS_PER_RANGE) {
+			this.ranges.add(new long[] {first, Math.min(SEEDS_PER_RANGE, firstSeed + numSeeds - first)});
+		}
+
+		this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(new Runnable() {
+			public void run() {
+				acceptWorkers();
+			}
+		}, "simulation-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		try {
+			for (int idx = 0; idx < numWorkers; idx++) {
+				startWorker((idx == 0) ? this.crashAfter : 0);
+			}
+			synchronized (this) {
+				while (this.remainingSeeds > 0) {
+					wait(500);
+					if (this.remainingSeeds > 0 && !anyWorkerAlive()) {
+						if (this.restarts >= MAX_RESTARTS) {
+							throw new IOException("Every simulation worker has died.");
+						}
+						this.restarts++;
+						startWorker(0);
+					}
+				}
+			}
+		}
+		finally {
+			this.server.close();
+			for (Process worker : this.workers) {
+				if (!worker.waitFor(5, TimeUnit.SECONDS)) {
+					worker.destroyForcibly();
+				}
+			}
+		}
+		return this.total;
+	}
+
+	private synchronized void startWorker(long crashAfter) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+			"SimulationWorker", Integer.toString(this.server.getLocalPort()), Long.toString(crashAfter));
+		builder.inheritIO();
+		this.workers.add(builder.start());
+	}
+
+	private synchronized boolean anyWorkerAlive() {
+		for (Process worker : this.workers) {
+			if (worker.isAlive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void acceptWorkers() {
+		while (true) {
+			final Socket socket;
+			try {
+				socket = this.server.accept();
+			}
+			catch (IOException ex) {
+				return;
+			}
+			Thread handler = new Thread(new Runnable() {
+				public void run() {
+					serveWorker(socket);
+				}
+			}, "simulation-worker-handler");
+			handler.setDaemon(true);
+			handler.start();
+		}
+	}
+
+	private void serveWorker(Socket socket) {
+		long[] range = null;
+		long reported = 0;
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeInt(this.seats.length);
+			for (String seat : this.seats) {
+				out.writeUTF(seat);
+			}
+			out.writeInt(this.maxRounds);
+
+			while ((range = nextRange()) != null) {
+				out.writeByte(RANGE);
+				out.writeLong(range[0]);
+				out.writeLong(range[1]);
+				out.flush();
+				reported = 0;
+				while (reported < range[1]) {
+					if (in.readByte() != PARTIAL) {
+						throw new IOException("Unexpected message from a simulation worker.");
+					}
+					long count = in.readLong();
+					SimulationStats stats = SimulationStats.read(in, this.seats.length);
+					reported += count;
+					merge(stats, count);
+				}
+				range = null;
+			}
+			out.writeByte(STOP);
+			out.flush();
+		}
+		catch (IOException ex) {
+			if (range != null) {
+				workerFailed(range[0] + reported, range[1] - reported);
+			}
+		}
+		finally {
+			try {
+				socket.close();
+			}
+			catch (IOException ex) {}
+		}
+	}
+
+	// Blocks until there is a range to hand out, or returns null once the job is done.
+	private long[] nextRange() {
+		while (true) {
+			synchronized (this) {
+				if (this.remainingSeeds == 0) {
+					return null;
+				}
+			}
+			try {
+				long[] range = this.ranges.poll(100, TimeUnit.MILLISECONDS);
+				if (range != null) {
+					return range;
+				}
+			}
+			catch (InterruptedException ex) {
+				return null;
+			}
+		}
+	}
+
+	private synchronized void merge(SimulationStats stats, long numSeeds) {
+		this.total.add(stats);
+		this.remainingSeeds -= numSeeds;
+		notifyAll();
+	}
+
+	private synchronized void workerFailed(long firstSeed, long numSeeds) {
+		System.err.println("A simulation worker died. Requeueing " + numSeeds + " seeds starting at " + firstSeed + ".");
+		this.ranges.addFirst(new long[] {firstSeed, numSeeds});
+		if (this.restarts < MAX_RESTARTS) {
+			this.restarts++;
+			try {
+				startWorker(0);
+			}
+			catch (IOException ex) {
+				System.err.println("Could not start a replacement worker: " + ex.getMessage());
+			}
+		}
+		notifyAll();
+	}
+}
@@ -0,0 +1,109 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Totals for a batch of headless games with the same seating. Everything is a sum, so
+// stats for different seed ranges can be merged in any order and still come out
+// identical to playing every seed in one process.
+class SimulationStats {
+	private long games;
+	private long stalemates;
+	private long[] wins;
+	private long[] placeSums;
+	private long[] kills;
+	private long[] cardsStolen;
+	// Order-independent fingerprint of every seed's exact outcome, so two runs can be
+	// compared game by game without shipping every game.
+	private long outcomeHash;
+
+	public SimulationStats(int numSeats) {
+		this.wins = new long[numSeats];
+		this.placeSums = new long[numSeats];
+		this.kills = new long[numSeats];
+		this.cardsStolen = new long[numSeats];
+	}
+
+	public void addGame(long seed, Player[] players, int[] places, boolean stalemate) {
+		this.games++;
+		if (stalemate) {
+			this.stalemates++;
+		}
+		long hash = seed * 0x9E3779B97F4A7C15L;
+		for (int idx = 0; idx < players.length; idx++) {
+			if (places[idx] == 0 && !stalemate) {
+				this.wins[idx]++;
+			}
+			this.placeSums[idx] += places[idx];
+			this.kills[idx] += players[idx].getKills();
+			this.cardsStolen[idx] += players[idx].getCardsStolen();
+			hash = (hash ^ (places[idx] * 131 + players[idx].getKills())) * 0xBF58476D1CE4E5B9L;
+		}
+		this.outcomeHash += hash ^ (hash >>> 31);
+	}
+
+	public void add(SimulationStats other) {
+		this.games += other.games;
+		this.stalemates += other.stalemates;
+		this.outcomeHash += other.outcomeHash;
+		for (int idx = 0; idx < this.wins.length; idx++) {
+			this.wins[idx] += other.wins[idx];
+			this.placeSums[idx] += other.placeSums[idx];
+			this.kills[idx] += other.kills[idx];
+			this.cardsStolen[idx] += other.cardsStolen[idx];
+		}
+	}
+
+	public long getGames() {
+		return this.games;
+	}
+
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SimulationStats)) {
+			return false;
+		}
+		SimulationStats other = (SimulationStats)obj;
+		return this.games == other.games && this.stalemates == other.stalemates && this.outcomeHash == other.outcomeHash
+			&& Arrays.equals(this.wins, other.wins) && Arrays.equals(this.placeSums, other.placeSums)
+			&& Arrays.equals(this.kills, other.kills) && Arrays.equals(this.cardsStolen, other.cardsStolen);
+	}
+
+	public int hashCode() {
+		return Long.hashCode(this.outcomeHash);
+	}
+
+	public void print(String[] seats) {
+		System.out.println(this.games + " games, " + this.stalemates + " stalemates, outcome hash " + Long.toHexString(this.outcomeHash));
+		for (int idx = 0; idx < seats.length; idx++) {
+			double games = Math.max(this.games, 1);
+			System.out.println(String.format("\tSeat %d (%s): %d wins (%.1f%%), average place %.2f, %d kills, %d cards stolen",
+				idx + 1, seats[idx], this.wins[idx], 100 * this.wins[idx] / games, this.placeSums[idx] / games, this.kills[idx], this.cardsStolen[idx]));
+		}
+	}
+
+	void write(DataOutputStream out) throws IOException {
+		out.writeLong(this.games);
+		out.writeLong(this.stalemates);
+		out.writeLong(this.outcomeHash);
+		for (int idx = 0; idx < this.wins.length; idx++) {
+			out.writeLong(this.wins[idx]);
+			out.writeLong(this.placeSums[idx]);
+			out.writeLong(this.kills[idx]);
+			out.writeLong(this.cardsStolen[idx]);
+		}
+	}
+
+	static SimulationStats read(DataInputStream in, int numSeats) throws IOException {
+		SimulationStats stats = new SimulationStats(numSeats);
+		stats.games = in.readLong();
+		stats.stalemates = in.readLong();
+		stats.outcomeHash = in.readLong();
+		for (int idx = 0; idx < numSeats; idx++) {
+			stats.wins[idx] = in.readLong();
+			stats.placeSums[idx] = in.readLong();
+			stats.kills[idx] = in.readLong();
+			stats.cardsStolen[idx] = in.readLong();
+		}
+		return stats;
+	}
+}
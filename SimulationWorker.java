@@ -0,0 +1,50 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+// A worker process for SimulationCoordinator. It plays whatever seed ranges it is sent and
+// reports stats after every chunk, until it is told to stop.
+class SimulationWorker {
+	private static final long SEEDS_PER_REPORT = 250;
+
+	public static void main(String[] args) throws IOException {
+		int port = Integer.parseInt(args[0]);
+		long crashAfter = (args.length > 1) ? Long.parseLong(args[1]) : 0;
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		String[] seats = new String[in.readInt()];
+		for (int idx = 0; idx < seats.length; idx++) {
+			seats[idx] = in.readUTF();
+		}
+		int maxRounds = in.readInt();
+		Strategy[] strategies = Simulation.getStrategies(seats);
+
+		long gamesPlayed = 0;
+		while (in.readByte() == SimulationCoordinator.RANGE) {
+			long firstSeed = in.readLong();
+			long numSeeds = in.readLong();
+			for (long chunk = firstSeed; chunk < firstSeed + numSeeds; chunk += SEEDS_PER_REPORT) {
+				long count = Math.min(SEEDS_PER_REPORT, firstSeed + numSeeds - chunk);
+				SimulationStats stats = new SimulationStats(seats.length);
+				for (long seed = chunk; seed < chunk + count; seed++) {
+					Simulation.playSeed(strategies, seed, maxRounds, stats);
+					gamesPlayed++;
+					if (crashAfter > 0 && gamesPlayed >= crashAfter) {
+						Runtime.getRuntime().halt(1);
+					}
+				}
+				out.writeByte(SimulationCoordinator.PARTIAL);
+				out.writeLong(count);
+				stats.write(out);
+				out.flush();
+			}
+		}
+		socket.close();
+	}
+}
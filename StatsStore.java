@@ -0,0 +1,417 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Long-term stats for every player name, kept in an append-only log split into segments.
+//
+// Each segment starts with a header giving the oldest segment number it covers, followed
+// by records of [length][PlayerStats][CRC32]. A record is a delta, so the totals for a
+// name are the sum of all its records. record() only queues a game's results; a writer
+// thread appends them and updates the in-memory index, so the next game never waits on
+// the disk. Once enough segments are sealed a background thread compacts them into one
+// segment with a single record per name, which keeps startup fast.
+class StatsStore {
+	private static final int MAGIC = 0x53544154;
+	private static final long MAX_SEGMENT_BYTES = 4 << 20;
+	private static final int COMPACT_AFTER_SEGMENTS = 4;
+	// Queued by close() to stop the writer. It is told apart by identity, so a game with
+	// no results can't be mistaken for it.
+	private static final ArrayList<PlayerStats> CLOSE = new ArrayList<PlayerStats>();
+
+	private File directory;
+	private HashMap<String, PlayerStats> index;
+	private TreeSet<PlayerStats> leaderboard;
+	private LinkedBlockingQueue<ArrayList<PlayerStats>> pending;
+	private ArrayList<Long> sealedSegments;
+	private long activeSegment;
+	private DataOutputStream out;
+	private long activeBytes;
+	private Thread writer;
+	private ExecutorService compactor;
+	private boolean compacting;
+	private IOException writeError;
+	private boolean closed;
+
+	public StatsStore(File directory) throws IOException {
+		this.directory = directory;
+		this.index = new HashMap<String, PlayerStats>();
+		this.leaderboard = new TreeSet<PlayerStats>();
+		this.pending = new LinkedBlockingQueue<ArrayList<PlayerStats>>();
+		this.sealedSegments = new ArrayList<Long>();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create " + directory);
+		}
+
+		loadSegments();
+		this.activeSegment = this.sealedSegments.isEmpty() ? 1 : this.sealedSegments.get(this.sealedSegments.size() - 1) + 1;
+		openActiveSegment();
+
+		// Both threads are daemons so a store that is never closed doesn't keep the JVM
+		// running. A compaction cut short that way leaves the old segments in place.
+		this.compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "stats-compactor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.writer = new Thread(new Runnable() {
+			public void run() {
+				writeLoop();
+			}
+		}, "stats-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+		maybeCompact();
+	}
+
+	public static void main(String[] args) throws IOException {
+		File directory = new File((args.length > 0) ? args[0] : "stats");
+		int numPlayers = 10;
+		if (args.length > 1) {
+			try {
+				numPlayers = Integer.parseInt(args[1]);
+			}
+			catch (NumberFormatException ex) {
+				System.out.println("Usage: java StatsStore [directory] [numPlayers]");
+				return;
+			}
+		}
+		StatsStore store = new StatsStore(directory);
+		store.printLeaderboard(numPlayers);
+		store.close();
+	}
+
+	// Queues one game's results. Never touches the disk on the calling thread. Once the
+	// writer has failed nothing more can be saved, so this throws the error it failed with,
+	// and after close() it throws because nothing would write the results.
+	public void record(ArrayList<PlayerStats> results) throws IOException {
+		synchronized (this) {
+			if (this.writeError != null) {
+				throw this.writeError;
+			}
+			if (this.closed) {
+				throw new IOException("The stats store is closed.");
+			}
+			this.pending.add(results);
+		}
+	}
+
+	public synchronized PlayerStats getStats(String name) {
+		PlayerStats stats = this.index.get(name);
+		return (stats == null) ? null : stats.copy();
+	}
+
+	public synchronized ArrayList<PlayerStats> getTopPlayers(int numPlayers) {
+		ArrayList<PlayerStats> top = new ArrayList<PlayerStats>();
+		for (PlayerStats stats : this.leaderboard) {
+			if (top.size() == numPlayers) {
+				break;
+			}
+			top.add(stats.copy());
+		}
+		return top;
+	}
+
+	public void printLeaderboard(int numPlayers) {
+		ArrayList<PlayerStats> top = getTopPlayers(numPlayers);
+		if (top.size() == 0) {
+			System.out.println("No games have been recorded yet.");
+			return;
+		}
+		System.out.println("Leaderboard:");
+		for (int idx = 0; idx < top.size(); idx++) {
+			System.out.println("\t" + (idx + 1) + ". " + top.get(idx));
+		}
+	}
+
+	// Writes everything queued so far and stops the background threads.
+	public void close() throws IOException {
+		synchronized (this) {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			this.pending.add(CLOSE);
+		}
+		try {
+			this.writer.join();
+			this.compactor.shutdown();
+			this.compactor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		this.out.close();
+		synchronized (this) {
+			if (this.writeError != null) {
+				throw this.writeError;
+			}
+		}
+	}
+
+	private synchronized void apply(PlayerStats delta) {
+		PlayerStats stats = this.index.get(delta.getName());
+		if (stats == null) {
+			stats = new PlayerStats(delta.getName());
+			this.index.put(stats.getName(), stats);
+		}
+		else {
+			this.leaderboard.remove(stats);
+		}
+		stats.add(delta);
+		this.leaderboard.add(stats);
+	}
+
+	private void writeLoop() {
+		ArrayList<ArrayList<PlayerStats>> batch = new ArrayList<ArrayList<PlayerStats>>();
+		boolean closing = false;
+		while (!closing) {
+			try {
+				batch.add(this.pending.take());
+			}
+			catch (InterruptedException ex) {
+				return;
+			}
+			this.pending.drainTo(batch);
+			try {
+				for (ArrayList<PlayerStats> results : batch) {
+					if (results == CLOSE) {
+						closing = true;
+					}
+					for (PlayerStats stats : results) {
+						appendRecord(stats);
+					}
+				}
+				this.out.flush();
+				for (ArrayList<PlayerStats> results : batch) {
+					for (PlayerStats stats : results) {
+						apply(stats);
+					}
+				}
+				if (this.activeBytes >= MAX_SEGMENT_BYTES) {
+					rollSegment();
+				}
+			}
+			catch (IOException ex) {
+				synchronized (this) {
+					this.writeError = ex;
+				}
+				return;
+			}
+			batch.clear();
+		}
+	}
+
+	private void appendRecord(PlayerStats stats) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		stats.write(new DataOutputStream(bytes));
+		byte[] payload = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		this.out.writeInt(payload.length);
+		this.out.write(payload);
+		this.out.writeInt((int)crc.getValue());
+		this.activeBytes += payload.length + 8;
+	}
+
+	private void rollSegment() throws IOException {
+		this.out.close();
+		synchronized (this) {
+			this.sealedSegments.add(this.activeSegment);
+		}
+		this.activeSegment++;
+		openActiveSegment();
+		maybeCompact();
+	}
+
+	private void openActiveSegment() throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segmentFile(this.activeSegment))));
+		this.out.writeInt(MAGIC);
+		this.out.writeLong(this.activeSegment);
+		this.activeBytes = 12;
+	}
+
+	private synchronized void maybeCompact() {
+		if (this.compacting || this.sealedSegments.size() < COMPACT_AFTER_SEGMENTS) {
+			return;
+		}
+		this.compacting = true;
+		final ArrayList<Long> segments = new ArrayList<Long>(this.sealedSegments);
+		this.compactor.submit(new Runnable() {
+			public void run() {
+				try {
+					compact(segments);
+				}
+				catch (IOException ex) {
+					System.err.println("Could not compact the stats log: " + ex.getMessage());
+				}
+				finally {
+					synchronized (StatsStore.this) {
+						StatsStore.this.compacting = false;
+					}
+				}
+			}
+		});
+	}
+
+	// Replaces sealed segments with one segment holding a single total per name. The new
+	// segment takes the number of the newest one it replaces and records the oldest in its
+	// header, so if we crash before the old files are deleted, loadSegments knows to skip them.
+	private void compact(ArrayList<Long> segments) throws IOException {
+		LinkedHashMap<String, PlayerStats> totals = new LinkedHashMap<String, PlayerStats>();
+		for (long segment : segments) {
+			readSegment(segment, totals);
+		}
+		long newest = segments.get(segments.size() - 1);
+		long oldest = readFirstCovered(segmentFile(segments.get(0)));
+		File tmp = new File(this.directory, segmentFile(newest).getName() + ".tmp");
+		FileOutputStream fileOut = new FileOutputStream(tmp);
+		DataOutputStream compactOut = new DataOutputStream(new BufferedOutputStream(fileOut));
+		compactOut.writeInt(MAGIC);
+		compactOut.writeLong(oldest);
+		for (PlayerStats stats : totals.values()) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			stats.write(new DataOutputStream(bytes));
+			byte[] payload = bytes.toByteArray();
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			compactOut.writeInt(payload.length);
+			compactOut.write(payload);
+			compactOut.writeInt((int)crc.getValue());
+		}
+		compactOut.flush();
+		fileOut.getFD().sync();
+		compactOut.close();
+		Files.move(tmp.toPath(), segmentFile(newest).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+		for (int idx = 0; idx < segments.size() - 1; idx++) {
+			segmentFile(segments.get(idx)).delete();
+		}
+		synchronized (this) {
+			this.sealedSegments.removeAll(segments.subList(0, segments.size() - 1));
+		}
+	}
+
+	// Rebuilds the index from disk. Segments already covered by a newer compacted segment
+	// are deleted, and a torn record at the end of a segment (from a crash mid-write) ends
+	// that segment.
+	private void loadSegments() throws IOException {
+		ArrayList<Long> segments = new ArrayList<Long>();
+		File[] files = this.directory.listFiles();
+		for (File file : (files == null) ? new File[0] : files) {
+			String name = file.getName();
+			if (name.endsWith(".tmp")) {
+				file.delete();
+			}
+			else if (name.startsWith("stats-") && name.endsWith(".log")) {
+				try {
+					segments.add(Long.parseLong(name.substring(6, name.length() - 4)));
+				}
+				catch (NumberFormatException ex) {}
+			}
+		}
+		Long[] sorted = segments.toArray(new Long[0]);
+		Arrays.sort(sorted);
+
+		long coveredFrom = Long.MAX_VALUE;
+		ArrayList<Long> live = new ArrayList<Long>();
+		for (int idx = sorted.length - 1; idx >= 0; idx--) {
+			long segment = sorted[idx];
+			if (segment >= coveredFrom) {
+				segmentFile(segment).delete();
+				continue;
+			}
+			live.add(0, segment);
+			coveredFrom = Math.min(coveredFrom, readFirstCovered(segmentFile(segment)));
+		}
+
+		LinkedHashMap<String, PlayerStats> totals = new LinkedHashMap<String, PlayerStats>();
+		for (long segment : live) {
+			readSegment(segment, totals);
+		}
+		for (PlayerStats stats : totals.values()) {
+			apply(stats);
+		}
+		this.sealedSegments.addAll(live);
+	}
+
+	private void readSegment(long segment, HashMap<String, PlayerStats> totals) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile(segment))));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(segmentFile(segment) + " is not a stats segment");
+			}
+			in.readLong();
+			while (true) {
+				int length = in.readInt();
+				if (length < 0 || length > 1 << 16) {
+					return;
+				}
+				byte[] payload = new byte[length];
+				in.readFully(payload);
+				int expected = in.readInt();
+				CRC32 crc = new CRC32();
+				crc.update(payload);
+				if ((int)crc.getValue() != expected) {
+					return;
+				}
+				PlayerStats delta = PlayerStats.read(new DataInputStream(new ByteArrayInputStream(payload)));
+				PlayerStats stats = totals.get(delta.getName());
+				if (stats == null) {
+					totals.put(delta.getName(), delta);
+				}
+				else {
+					stats.add(delta);
+				}
+			}
+		}
+		catch (EOFException ex) {
+			return;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private long readFirstCovered(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a stats segment");
+			}
+			return in.readLong();
+		}
+		catch (EOFException ex) {
+			return Long.parseLong(file.getName().substring(6, file.getName().length() - 4));
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private File segmentFile(long segment) {
+		return new File(this.directory, String.format("stats-%016d.log", segment));
+	}
+}
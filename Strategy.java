@@ -0,0 +1,27 @@
+import java.util.ArrayList;
+
+// Makes the decisions for a bot player. The same instance is shared by every game a
+// tournament runs at once, so implementations must not keep per-game state. Any
+// randomness should come from game.getRandom() so that seeded games are repeatable.
+interface Strategy {
+	int ATTACK = 1;
+	int DRAW = 2;
+	int FINISH = 3;
+
+	String getName();
+
+	// Returns ATTACK, DRAW or FINISH, the same choices as the menu in GameFlow.
+	int chooseAction(Player self, Game game);
+
+	// Returns null to cancel the attack.
+	Card chooseAttackCard(Player self, Game game);
+
+	// Returns null to cancel the attack.
+	Player chooseTarget(Player self, Card attackCard, ArrayList<Player> enemies, Game game);
+
+	// Returns null to use no defense card.
+	Card chooseDefenseCard(Player self, Player attacker, int attackValue, Game game);
+
+	// The victim always has at least one stealable card.
+	Card chooseStolenCard(Player self, Player victim, Game game);
+}
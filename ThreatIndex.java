@@ -0,0 +1,254 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+// Who can hurt whom, for games with lots of players. An attack with club a against a
+// player who answers with their best diamond d does a - d damage, and kills them if
+// a >= health + d. So every pair's threat comes down to three numbers per player: their
+// best club, their best diamond and health + best diamond, the smallest club that kills
+// them. The alive players are kept sorted by each of those numbers, and a change to one
+// player's hand or health only moves that player's entries. Every question below looks
+// at the first one or two entries of a set, so it takes O(log n) however big the game is.
+// Ties go by name rather than by when a player was added, so an index rebuilt for a game
+// loaded from a GameArena gives the same answers as the one the game had before.
+class ThreatIndex {
+	private HashMap<Player, Entry> entries;
+	private TreeSet<Entry> byAttack;
+	private TreeSet<Entry> byDefense;
+	private TreeSet<Entry> byLethalValue;
+	private long nextId;
+
+	public ThreatIndex() {
+		this.entries = new HashMap<Player, Entry>();
+		this.byAttack = new TreeSet<Entry>(new Comparator<Entry>() {
+			public int compare(Entry a, Entry b) {
+				return (a.attack != b.attack) ? b.attack - a.attack : compareTies(a, b);
+			}
+		});
+		this.byDefense = new TreeSet<Entry>(new Comparator<Entry>() {
+			public int compare(Entry a, Entry b) {
+				return (a.defense != b.defense) ? a.defense - b.defense : compareTies(a, b);
+			}
+		});
+		this.byLethalValue = new TreeSet<Entry>(new Comparator<Entry>() {
+			public int compare(Entry a, Entry b) {
+				return (a.lethalValue != b.lethalValue) ? a.lethalValue - b.lethalValue : compareTies(a, b);
+			}
+		});
+	}
+
+	public int size() {
+		return this.entries.size();
+	}
+
+	// Re-reads one player's hand and health. Dead players are dropped.
+	public void update(Player player) {
+		Entry entry = this.entries.get(player);
+		if (entry != null) {
+			this.byAttack.remove(entry);
+			this.byDefense.remove(entry);
+			this.byLethalValue.remove(entry);
+		}
+		if (player.getDead()) {
+			this.entries.remove(player);
+			return;
+		}
+		if (entry == null) {
+			entry = new Entry(player, this.nextId++);
+			this.entries.put(player, entry);
+		}
+		entry.attack = getBestValue(player.getAttackCards());
+		entry.defense = getBestValue(player.getDefenseCards());
+		entry.lethalValue = player.getHealth() + entry.defense;
+		this.byAttack.add(entry);
+		this.byDefense.add(entry);
+		this.byLethalValue.add(entry);
+	}
+
+	// The value of the player's best club, or 0 if they have none.
+	public int getAttack(Player player) {
+		Entry entry = this.entries.get(player);
+		return (entry == null) ? 0 : entry.attack;
+	}
+
+	// The smallest club that kills the player even if they play their best diamond, or
+	// Integer.MAX_VALUE if the player isn't indexed, since nothing is known to kill them.
+	public int getLethalValue(Player player) {
+		Entry entry = this.entries.get(player);
+		return (entry == null) ? Integer.MAX_VALUE : entry.lethalValue;
+	}
+
+	// The enemy whose best club hits hardest, or null if no enemy has a club.
+	public Player getBiggestThreat(Player self) {
+		Entry entry = firstOther(this.byAttack, self);
+		return (entry == null || entry.attack == 0) ? null : entry.player;
+	}
+
+	// Whether some enemy could kill the player with one attack.
+	public boolean isInDanger(Player self) {
+		Player threat = getBiggestThreat(self);
+		return threat != null && getAttack(threat) >= getLethalValue(self);
+	}
+
+	// An enemy the player's best club kills whatever they defend with, or null if there
+	// isn't one. If there are several, it is the one with the least to spare.
+	public Player getKillableEnemy(Player self) {
+		Entry entry = firstOther(this.byLethalValue, self);
+		if (entry == null || entry.lethalValue > getAttack(self)) {
+			return null;
+		}
+		return entry.player;
+	}
+
+	public boolean canKillAnyone(Player self) {
+		return getKillableEnemy(self) != null;
+	}
+
+	// An enemy to kill if there is one. Otherwise the enemy with the weakest best
+	// defense, who takes the most damage from the player's best club. Null if the
+	// player's best club can't get through anybody's defense.
+	public Player getBestTarget(Player self) {
+		Player killable = getKillableEnemy(self);
+		if (killable != null) {
+			return killable;
+		}
+		Entry entry = firstOther(this.byDefense, self);
+		if (entry == null || entry.defense >= getAttack(self)) {
+			return null;
+		}
+		return entry.player;
+	}
+
+	private static int compareTies(Entry a, Entry b) {
+		int byName = a.player.getName().compareTo(b.player.getName());
+		return (byName != 0) ? byName : Long.compare(a.id, b.id);
+	}
+
+	// The player only ever appears once in each set, so at most two entries are read.
+	private static Entry firstOther(TreeSet<Entry> set, Player self) {
+		Iterator<Entry> iterator = set.iterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry.player != self) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	private static int getBestValue(ArrayList<Card> cards) {
+		int best = 0;
+		for (Card card : cards) {
+			best = Math.max(best, card.getValue());
+		}
+		return best;
+	}
+
+	// One deck can't deal a lobby this big, so the demo makes up its cards.
+	private static Card randomCard(Random random) {
+		return new Card(2 + random.nextInt(13), CardDeck.SUITS[random.nextInt(4)]);
+	}
+
+	static class Entry {
+		private Player player;
+		private long id;
+		private int attack;
+		private int defense;
+		private int lethalValue;
+
+		Entry(Player player, long id) {
+			this.player = player;
+			this.id = id;
+		}
+	}
+
+	// Deals a big lobby, then plays random attacks, steals and draws, and checks every answer
+	// against a scan of all the players after each one.
+	public static void main(String[] args) {
+		int numPlayers = 5000;
+		int numChanges = 2000;
+		try {
+			if (args.length > 0) {
+				numPlayers = Integer.parseInt(args[0]);
+			}
+			if (args.length > 1) {
+				numChanges = Integer.parseInt(args[1]);
+			}
+		}
+		catch (NumberFormatException ex) {
+			numPlayers = 0;
+		}
+		if (numPlayers < 2 || numChanges < 1) {
+			System.out.println("Usage: java ThreatIndex [numPlayers] [numChanges]");
+			return;
+		}
+		Game game = new Game(1);
+		Random random = new Random(2);
+		Strategy greedy = new GreedyStrategy();
+		for (int idx = 0; idx < numPlayers; idx++) {
+			Player player = new Player("Player " + (idx + 1), game, greedy);
+			for (int card = 0; card < 6; card++) {
+				player.addCardToStats(randomCard(random));
+			}
+			game.getPlayers().add(player);
+		}
+		ThreatIndex index = new ThreatIndex();
+		game.setThreatIndex(index);
+
+		long indexNanos = 0;
+		long scanNanos = 0;
+		for (int change = 0; change < numChanges; change++) {
+			ArrayList<Player> alivePlayers = game.getAlivePlayers();
+			Player self = alivePlayers.get(random.nextInt(alivePlayers.size()));
+			Player other = alivePlayers.get(random.nextInt(alivePlayers.size()));
+			if (other != self && self.getAttackCards().size() > 0) {
+				Card card = self.getAttackCards().get(random.nextInt(self.getAttackCards().size()));
+				self.spendCard(card);
+				if (game.resolveAttack(self, other, card.getValue(), 0)) {
+					for (int steal = 0; steal < 3 && other.getNumStealableCards() > 0; steal++) {
+						self.stealCard(other, other.getHighestStealableCard());
+					}
+					game.returnCardsToDeck(other);
+				}
+			}
+			else {
+				self.addCardToStats(randomCard(random));
+			}
+
+			long start = System.nanoTime();
+			Player best = index.getBestTarget(self);
+			Player threat = index.getBiggestThreat(self);
+			boolean canKill = index.canKillAnyone(self);
+			boolean inDanger = index.isInDanger(self);
+			indexNanos += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int attack = getBestValue(self.getAttackCards());
+			int lethalValue = self.getHealth() + getBestValue(self.getDefenseCards());
+			int minLethal = Integer.MAX_VALUE;
+			int minDefense = Integer.MAX_VALUE;
+			int maxAttack = 0;
+			for (Player enemy : self.getEnemies()) {
+				int defense = getBestValue(enemy.getDefenseCards());
+				minLethal = Math.min(minLethal, enemy.getHealth() + defense);
+				minDefense = Math.min(minDefense, defense);
+				maxAttack = Math.max(maxAttack, getBestValue(enemy.getAttackCards()));
+			}
+			scanNanos += System.nanoTime() - start;
+
+			boolean agrees = canKill == (minLethal <= attack)
+				&& inDanger == (maxAttack > 0 && maxAttack >= lethalValue)
+				&& ((threat == null) ? maxAttack == 0 : getBestValue(threat.getAttackCards()) == maxAttack)
+				&& ((best == null) ? (minLethal > attack && minDefense >= attack) : (canKill ? best.getHealth() + getBestValue(best.getDefenseCards()) == minLethal : getBestValue(best.getDefenseCards()) == minDefense));
+			if (!agrees) {
+				System.out.println("The index disagrees with a full scan after change " + change + ".");
+				return;
+			}
+		}
+		System.out.println("The index agreed with a full scan after all " + numChanges + " changes. " + game.getAlivePlayers().size() + " of " + numPlayers + " players are alive.");
+		System.out.println(String.format("Answering all four questions took %.2f us with the index and %.2f us with a scan.", indexNanos / 1000.0 / numChanges, scanNanos / 1000.0 / numChanges));
+	}
+}
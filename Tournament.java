@@ -0,0 +1,515 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Ranks bot strategies by playing headless games on every core. Each pairing plays
+// round-robin until its confidence interval no longer contains an even score, then
+// random multi-seat games add more comparisons. Every deal is replayed with the seats
+// rotated so no strategy keeps the tie-break advantage of an early seat.
+//
+// The ratings are fitted once, after all the games, as the Bradley-Terry model that
+// makes the results most likely, and put on the Elo scale. Unlike updating a rating
+// after each game, the fit doesn't depend on the order batches finish in, and it comes
+// with a confidence interval per rating.
+class Tournament {
+	public static final int MAX_ROUNDS = 300;
+	private static final double MEAN_RATING = 1500;
+	private static final double Z_SCORE = 2.576;
+	private static final double ALPHA = 0.01;
+	private static final int MIN_GAMES_PER_PAIRING = 200;
+	private static final int SEEDS_PER_BATCH = 64;
+	private static final int MULTI_SEAT_GAMES_PER_BATCH = 256;
+
+	private Strategy[] strategies;
+	private double[] ratings;
+	private double[] ratingHalfWidths;
+	private double[][] scores;
+	private double[][] comparisons;
+	private long[] gamesPlayed;
+	private long[] wins;
+	private long games;
+	private long stalemates;
+	private ArrayList<Pairing> pairings;
+	private ExecutorService executor;
+	private ExecutorCompletionService<BatchResult> completion;
+	private long nextSeed;
+
+	public Tournament(Strategy[] strategies, long seed) {
+		this.strategies = strategies;
+		this.ratings = new double[strategies.length];
+		this.ratingHalfWidths = new double[strategies.length];
+		this.scores = new double[strategies.length][strategies.length];
+		this.comparisons = new double[strategies.length][strategies.length];
+		this.gamesPlayed = new long[strategies.length];
+		this.wins = new long[strategies.length];
+		this.pairings = new ArrayList<Pairing>();
+		this.nextSeed = seed;
+	}
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		int maxGamesPerPairing = 100000;
+		int multiSeatGames = 1000000;
+		int trainingGenerations = 30;
+		try {
+			if (args.length > 0) {
+				maxGamesPerPairing = Integer.parseInt(args[0]);
+			}
+			if (args.length > 1) {
+				multiSeatGames = Integer.parseInt(args[1]);
+			}
+			if (args.length > 2) {
+				trainingGenerations = Integer.parseInt(args[2]);
+			}
+		}
+		catch (NumberFormatException ex) {
+			System.out.println("Usage: java Tournament [maxGamesPerPairing] [multiSeatGames] [trainingGenerations]");
+			return;
+		}
+
+		System.out.println("Training the learned strategy for " + trainingGenerations + " generations.");
+		Strategy[] strategies = {
+			new RandomStrategy(),
+			new GreedyStrategy(),
+			new SearchStrategy(),
+			LearnedStrategy.train(trainingGenerations, 300, 1)
+		};
+		Tournament tournament = new Tournament(strategies, System.nanoTime());
+		tournament.start(Runtime.getRuntime().availableProcessors());
+		try {
+			System.out.println("Playing round-robin pairings.");
+			tournament.runRoundRobin(maxGamesPerPairing);
+			System.out.println("Playing " + multiSeatGames + " random multi-seat games.");
+			tournament.runMultiSeat(multiSeatGames);
+		}
+		finally {
+			tournament.stop();
+		}
+		tournament.printResults();
+	}
+
+	public void start(int numThreads) {
+		this.executor = Executors.newFixedThreadPool(numThreads);
+		this.completion = new ExecutorCompletionService<BatchResult>(this.executor);
+	}
+
+	public void stop() {
+		this.executor.shutdownNow();
+	}
+
+	public void runRoundRobin(int maxGamesPerPairing) throws InterruptedException, ExecutionException {
+		int inFlight = 0;
+		for (int a = 0; a < this.strategies.length; a++) {
+			for (int b = a + 1; b < this.strategies.length; b++) {
+				Pairing pairing = new Pairing(a, b);
+				this.pairings.add(pairing);
+				submitPairingBatch(pairing);
+				inFlight++;
+			}
+		}
+		while (inFlight > 0) {
+			BatchResult result = this.completion.take().get();
+			inFlight--;
+			Pairing pairing = result.pairing;
+			for (int game = 0; game < result.places.length; game++) {
+				recordGame(result.seats[game], result.places[game]);
+			}
+			pairing.record(result);
+			if (!pairing.isDecided() && pairing.games < maxGamesPerPairing) {
+				submitPairingBatch(pairing);
+				inFlight++;
+			}
+		}
+	}
+
+	public void runMultiSeat(int numGames) throws InterruptedException, ExecutionException {
+		if (this.strategies.length < 3) {
+			return;
+		}
+		int inFlight = 0;
+		for (int submitted = 0; submitted < numGames; submitted += MULTI_SEAT_GAMES_PER_BATCH) {
+			int batchSize = Math.min(MULTI_SEAT_GAMES_PER_BATCH, numGames - submitted);
+			this.completion.submit(new MultiSeatBatch(this.strategies, batchSize, this.nextSeed++));
+			inFlight++;
+		}
+		while (inFlight > 0) {
+			BatchResult result = this.completion.take().get();
+			inFlight--;
+			for (int game = 0; game < result.places.length; game++) {
+				recordGame(result.seats[game], result.places[game]);
+			}
+		}
+	}
+
+	private void submitPairingBatch(Pairing pairing) {
+		int[] seating = {pairing.a, pairing.b};
+		this.completion.submit(new RotationBatch(pairing, this.strategies, seating, this.nextSeed, SEEDS_PER_BATCH));
+		this.nextSeed += SEEDS_PER_BATCH;
+	}
+
+	// Every pair of seats in a game is one comparison, scored by their places. A game's
+	// comparisons share one outcome, so they are scaled down by the number of opponents,
+	// and a deal's rotations share one deal, so they are scaled down by the number of
+	// rotations. A deal then adds up to one comparison per pair of strategies. Everyone
+	// still alive when a game stops at MAX_ROUNDS shares first place, but only a game
+	// with one survivor counts as a win.
+	private void recordGame(int[] seats, int[] places) {
+		int numSeats = seats.length;
+		double weight = 1.0 / ((numSeats - 1) * numSeats);
+		int survivors = 0;
+		for (int ii = 0; ii < numSeats; ii++) {
+			if (places[ii] == 0) {
+				survivors++;
+			}
+		}
+		this.games++;
+		if (survivors > 1) {
+			this.stalemates++;
+		}
+		for (int ii = 0; ii < numSeats; ii++) {
+			for (int jj = 0; jj < numSeats; jj++) {
+				if (ii == jj || seats[ii] == seats[jj]) {
+					continue;
+				}
+				this.scores[seats[ii]][seats[jj]] += weight * pairScore(places[ii], places[jj]);
+				this.comparisons[seats[ii]][seats[jj]] += weight;
+			}
+		}
+		for (int ii = 0; ii < numSeats; ii++) {
+			this.gamesPlayed[seats[ii]]++;
+			if (places[ii] == 0 && survivors == 1) {
+				this.wins[seats[ii]]++;
+			}
+		}
+	}
+
+	// Fits Bradley-Terry strengths, where i beats j with probability p[i] / (p[i] + p[j]),
+	// by minorization-maximization, which converges to the maximum likelihood from any
+	// start. Every pair also gets one drawn comparison as a prior, so a strategy that
+	// never scores still gets a finite rating.
+	//
+	// The interval comes from the curvature of the likelihood at the fit. Ratings are
+	// only defined up to a shift, so the covariance is the pseudo-inverse of the
+	// information matrix, which centres the intervals on the mean rating.
+	public void fitRatings() {
+		int numStrategies = this.strategies.length;
+		double[][] scores = new double[numStrategies][numStrategies];
+		double[][] comparisons = new double[numStrategies][numStrategies];
+		for (int ii = 0; ii < numStrategies; ii++) {
+			for (int jj = 0; jj < numStrategies; jj++) {
+				if (ii != jj) {
+					scores[ii][jj] = this.scores[ii][jj] + 0.5;
+					comparisons[ii][jj] = this.comparisons[ii][jj] + 1;
+				}
+			}
+		}
+
+		double[] strengths = new double[numStrategies];
+		java.util.Arrays.fill(strengths, 1);
+		for (int iteration = 0; iteration < 10000; iteration++) {
+			double[] next = new double[numStrategies];
+			double logSum = 0;
+			for (int ii = 0; ii < numStrategies; ii++) {
+				double won = 0;
+				double denominator = 0;
+				for (int jj = 0; jj < numStrategies; jj++) {
+					if (ii != jj) {
+						won += scores[ii][jj];
+						denominator += comparisons[ii][jj] / (strengths[ii] + strengths[jj]);
+					}
+				}
+				next[ii] = won / denominator;
+				logSum += Math.log(next[ii]);
+			}
+			double change = 0;
+			for (int ii = 0; ii < numStrategies; ii++) {
+				next[ii] /= Math.exp(logSum / numStrategies);
+				change = Math.max(change, Math.abs(next[ii] - strengths[ii]) / strengths[ii]);
+			}
+			strengths = next;
+			if (change < 1e-12) {
+				break;
+			}
+		}
+
+		double[][] information = new double[numStrategies][numStrategies];
+		for (int ii = 0; ii < numStrategies; ii++) {
+			for (int jj = 0; jj < numStrategies; jj++) {
+				if (ii != jj) {
+					double total = strengths[ii] + strengths[jj];
+					double curvature = comparisons[ii][jj] * strengths[ii] * strengths[jj] / (total * total);
+					information[ii][jj] -= curvature;
+					information[ii][ii] += curvature;
+				}
+			}
+		}
+		// The pseudo-inverse of a matrix whose rows sum to zero is (M + J/n)^-1 - J/n,
+		// where J is all ones.
+		for (int ii = 0; ii < numStrategies; ii++) {
+			for (int jj = 0; jj < numStrategies; jj++) {
+				information[ii][jj] += 1.0 / numStrategies;
+			}
+		}
+		double[][] covariance = invert(information);
+		double eloPerLog = 400 / Math.log(10);
+		for (int idx = 0; idx < numStrategies; idx++) {
+			this.ratings[idx] = MEAN_RATING + eloPerLog * Math.log(strengths[idx]);
+			double variance = Math.max(covariance[idx][idx] - 1.0 / numStrategies, 0);
+			this.ratingHalfWidths[idx] = Z_SCORE * eloPerLog * Math.sqrt(variance);
+		}
+	}
+
+	// Gauss-Jordan elimination with partial pivoting. There are only a few strategies.
+	private static double[][] invert(double[][] matrix) {
+		int size = matrix.length;
+		double[][] work = new double[size][2 * size];
+		for (int row = 0; row < size; row++) {
+			System.arraycopy(matrix[row], 0, work[row], 0, size);
+			work[row][size + row] = 1;
+		}
+		for (int col = 0; col < size; col++) {
+			int pivot = col;
+			for (int row = col + 1; row < size; row++) {
+				if (Math.abs(work[row][col]) > Math.abs(work[pivot][col])) {
+					pivot = row;
+				}
+			}
+			double[] swap = work[col];
+			work[col] = work[pivot];
+			work[pivot] = swap;
+			double scale = work[col][col];
+			for (int idx = 0; idx < 2 * size; idx++) {
+				work[col][idx] /= scale;
+			}
+			for (int row = 0; row < size; row++) {
+				if (row != col && work[row][col] != 0) {
+					double factor = work[row][col];
+					for (int idx = 0; idx < 2 * size; idx++) {
+						work[row][idx] -= factor * work[col][idx];
+					}
+				}
+			}
+		}
+		double[][] inverse = new double[size][size];
+		for (int row = 0; row < size; row++) {
+			System.arraycopy(work[row], size, inverse[row], 0, size);
+		}
+		return inverse;
+	}
+
+	public void printResults() {
+		fitRatings();
+		Integer[] order = new Integer[this.strategies.length];
+		for (int idx = 0; idx < order.length; idx++) {
+			order[idx] = idx;
+		}
+		java.util.Arrays.sort(order, (x, y) -> Double.compare(this.ratings[y], this.ratings[x]));
+
+		System.out.println();
+		System.out.println("Ratings fitted to every result, with a " + Z_SCORE + " sigma interval:");
+		System.out.println(String.format("%-10s %8s %9s %12s %8s", "Strategy", "Rating", "+/-", "Games", "Win %"));
+		for (int idx : order) {
+			double winRate = (this.gamesPlayed[idx] == 0) ? 0 : 100.0 * this.wins[idx] / this.gamesPlayed[idx];
+			System.out.println(String.format("%-10s %8.1f %9.1f %12d %7.1f%%", this.strategies[idx].getName(), this.ratings[idx], this.ratingHalfWidths[idx], this.gamesPlayed[idx], winRate));
+		}
+		double stalemateRate = (this.games == 0) ? 0 : 100.0 * this.stalemates / this.games;
+		System.out.println(String.format("%d of %d games (%.1f%%) were stalemates after %d rounds and count as a win for nobody.", this.stalemates, this.games, stalemateRate, MAX_ROUNDS));
+
+		System.out.println();
+		System.out.println("Pairings (score of the first strategy per deal, with a bound that holds at " + (100 * (1 - ALPHA)) + "% over every check):");
+		for (Pairing pairing : this.pairings) {
+			double halfWidth = pairing.getHalfWidth();
+			System.out.println(String.format("\t%s vs %s: %.3f +/- %.3f over %d deals (%d games)%s",
+				this.strategies[pairing.a].getName(), this.strategies[pairing.b].getName(),
+				pairing.getMean(), halfWidth, pairing.deals, pairing.games, pairing.isDecided() ? "" : " (undecided)"));
+		}
+	}
+
+	static double pairScore(int place, int otherPlace) {
+		if (place < otherPlace) {
+			return 1;
+		}
+		if (place > otherPlace) {
+			return 0;
+		}
+		return 0.5;
+	}
+
+	public static Strategy[] rotate(Strategy[] seats, int offset) {
+		Strategy[] rotated = new Strategy[seats.length];
+		for (int idx = 0; idx < seats.length; idx++) {
+			rotated[idx] = seats[(idx + offset) % seats.length];
+		}
+		return rotated;
+	}
+
+	// Plays one headless game and returns each seat's place: 0 for the winner (or for
+	// everyone still alive when the round limit is hit), then later deaths before earlier ones.
+	public static int[] playGame(Strategy[] seats, long seed) {
+		Game game = new Game(seed);
+		Player[] players = new Player[seats.length];
+		for (int idx = 0; idx < seats.length; idx++) {
+			players[idx] = new Player(seats[idx].getName() + " " + (idx + 1), game, seats[idx]);
+			game.getPlayers().add(players[idx]);
+		}
+		game.playHeadless(MAX_ROUNDS);
+		return getPlaces(game, players);
+	}
+
+	public static int[] getPlaces(Game game, Player[] players) {
+		ArrayList<Player> deathOrder = game.getDeathOrder();
+		int[] places = new int[players.length];
+		for (int idx = 0; idx < players.length; idx++) {
+			int deathIdx = deathOrder.indexOf(players[idx]);
+			places[idx] = (deathIdx == -1) ? 0 : players.length - 1 - deathIdx;
+		}
+		return places;
+	}
+
+	// The games of one deal, one per rotation, are played from the same cards, so the
+	// pairing takes their average as a single sample. It is checked after every batch,
+	// and checking that often would stop too early on noise with a fixed bound. So the
+	// bound is Hoeffding's for samples between 0 and 1, and the k-th check only gets
+	// ALPHA / (k (k + 1)) of the error budget, which adds up to ALPHA over all checks.
+	static class Pairing {
+		int a;
+		int b;
+		long games;
+		long deals;
+		int checks;
+		double scoreSum;
+
+		Pairing(int a, int b) {
+			this.a = a;
+			this.b = b;
+		}
+
+		void record(BatchResult result) {
+			int numSeats = 2;
+			for (int first = 0; first < result.places.length; first += numSeats) {
+				double score = 0;
+				for (int game = first; game < first + numSeats; game++) {
+					int aIdx = (result.seats[game][0] == this.a) ? 0 : 1;
+					score += pairScore(result.places[game][aIdx], result.places[game][1 - aIdx]);
+				}
+				this.scoreSum += score / numSeats;
+				this.deals++;
+				this.games += numSeats;
+			}
+			this.checks++;
+		}
+
+		double getMean() {
+			return (this.deals == 0) ? 0.5 : this.scoreSum / this.deals;
+		}
+
+		double getHalfWidth() {
+			if (this.deals == 0) {
+				return 0.5;
+			}
+			double alpha = ALPHA / ((double)this.checks * (this.checks + 1));
+			return Math.sqrt(Math.log(2 / alpha) / (2 * this.deals));
+		}
+
+		boolean isDecided() {
+			return this.games >= MIN_GAMES_PER_PAIRING && Math.abs(getMean() - 0.5) > getHalfWidth();
+		}
+	}
+
+	static class BatchResult {
+		Pairing pairing;
+		int[][] seats;
+		int[][] places;
+
+		BatchResult(Pairing pairing, int numGames) {
+			this.pairing = pairing;
+			this.seats = new int[numGames][];
+			this.places = new int[numGames][];
+		}
+	}
+
+	// Plays each seed once per rotation of the seating, so every strategy sits in every
+	// seat with exactly the same deal.
+	static class RotationBatch implements Callable<BatchResult> {
+		private Pairing pairing;
+		private Strategy[] strategies;
+		private int[] seating;
+		private long firstSeed;
+		private int numSeeds;
+
+		RotationBatch(Pairing pairing, Strategy[] strategies, int[] seating, long firstSeed, int numSeeds) {
+			this.pairing = pairing;
+			this.strategies = strategies;
+			this.seating = seating;
+			this.firstSeed = firstSeed;
+			this.numSeeds = numSeeds;
+		}
+
+		public BatchResult call() {
+			int numSeats = this.seating.length;
+			BatchResult result = new BatchResult(this.pairing, this.numSeeds * numSeats);
+			int game = 0;
+			for (long seed = this.firstSeed; seed < this.firstSeed + this.numSeeds; seed++) {
+				for (int offset = 0; offset < numSeats; offset++) {
+					int[] seats = new int[numSeats];
+					Strategy[] seated = new Strategy[numSeats];
+					for (int idx = 0; idx < numSeats; idx++) {
+						seats[idx] = this.seating[(idx + offset) % numSeats];
+						seated[idx] = this.strategies[seats[idx]];
+					}
+					result.seats[game] = seats;
+					result.places[game] = playGame(seated, seed);
+					game++;
+				}
+			}
+			return result;
+		}
+	}
+
+	// Draws a random table size and a random set of distinct strategies for each deal,
+	// then plays the deal once per rotation.
+	static class MultiSeatBatch implements Callable<BatchResult> {
+		private Strategy[] strategies;
+		private int numGames;
+		private long seed;
+
+		MultiSeatBatch(Strategy[] strategies, int numGames, long seed) {
+			this.strategies = strategies;
+			this.numGames = numGames;
+			this.seed = seed;
+		}
+
+		public BatchResult call() {
+			Random random = new Random(this.seed);
+			BatchResult result = new BatchResult(null, this.numGames);
+			int game = 0;
+			while (game < this.numGames) {
+				int numSeats = 3 + random.nextInt(this.strategies.length - 2);
+				ArrayList<Integer> pool = new ArrayList<Integer>();
+				for (int idx = 0; idx < this.strategies.length; idx++) {
+					pool.add(idx);
+				}
+				int[] seating = new int[numSeats];
+				for (int idx = 0; idx < numSeats; idx++) {
+					seating[idx] = pool.remove(random.nextInt(pool.size()));
+				}
+				long dealSeed = random.nextLong();
+				for (int offset = 0; offset < numSeats && game < this.numGames; offset++) {
+					int[] seats = new int[numSeats];
+					Strategy[] seated = new Strategy[numSeats];
+					for (int idx = 0; idx < numSeats; idx++) {
+						seats[idx] = seating[(idx + offset) % numSeats];
+						seated[idx] = this.strategies[seats[idx]];
+					}
+					result.seats[game] = seats;
+					result.places[game] = playGame(seated, dealSeed);
+					game++;
+				}
+			}
+			return result;
+		}
+	}
+}
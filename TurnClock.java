@@ -0,0 +1,34 @@
+// Time limits for one player: a budget for each decision and a budget for the whole game,
+// like a chess clock. Every clock shares one HashedWheelTimer.
+class TurnClock {
+	public static final HashedWheelTimer TIMER = new HashedWheelTimer(100, 512);
+
+	private long decisionMillis;
+	private long remainingGameMillis;
+
+	public TurnClock(long decisionMillis, long gameMillis) {
+		this.decisionMillis = decisionMillis;
+		this.remainingGameMillis = gameMillis;
+	}
+
+	public long getDecisionMillis() {
+		return this.decisionMillis;
+	}
+
+	// How long the player has for their next decision.
+	public long getNextBudgetMillis() {
+		return Math.max(Math.min(this.decisionMillis, this.remainingGameMillis), 0);
+	}
+
+	public long getRemainingGameMillis() {
+		return Math.max(this.remainingGameMillis, 0);
+	}
+
+	public void spend(long millis) {
+		this.remainingGameMillis -= millis;
+	}
+
+	public boolean isOutOfTime() {
+		return this.remainingGameMillis <= 0;
+	}
+}